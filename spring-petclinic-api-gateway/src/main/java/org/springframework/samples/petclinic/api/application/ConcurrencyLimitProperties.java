@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Adaptive concurrency limits applied to each gateway route and to each backend service called by the
+ * aggregating endpoints. Requests over the limit are rejected at once with a 503.
+ */
+@Data
+@ConfigurationProperties(prefix = "petclinic.gateway.concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    private boolean enabled = true;
+
+    private int initialLimit = 20;
+
+    private int minLimit = 4;
+
+    private int maxLimit = 200;
+
+    /**
+     * Weight of each new estimate in the limit, between 0 and 1. Lower values react more slowly.
+     */
+    private double smoothing = 0.2;
+
+    /**
+     * How much slower than the long-term average recent calls may get before the limit is lowered.
+     */
+    private double rttTolerance = 1.5;
+
+    /**
+     * Factor applied to the limit when a call times out, fails or is answered with a 503 or 504.
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * Sent in the Retry-After header of rejected requests, rounded up to whole seconds.
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+}
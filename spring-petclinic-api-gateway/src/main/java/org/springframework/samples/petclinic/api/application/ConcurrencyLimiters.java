@@ -0,0 +1,69 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link GradientLimiter} per gateway route and one per backend service, created on first use.
+ * Their limits, requests in flight and rejections are published under {@code petclinic.gateway.concurrency.*}
+ * with a {@code kind} tag of {@code route} or {@code client}.
+ */
+@Component
+public class ConcurrencyLimiters {
+
+    private final ConcurrencyLimitProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, GradientLimiter> routes = new ConcurrentHashMap<>();
+
+    private final Map<String, GradientLimiter> clients = new ConcurrentHashMap<>();
+
+    public ConcurrencyLimiters(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * @param routeId id of a {@code spring.cloud.gateway.routes} entry
+     */
+    public GradientLimiter route(String routeId) {
+        return routes.computeIfAbsent(routeId, id -> new GradientLimiter("route", id, properties, meterRegistry));
+    }
+
+    /**
+     * @param serviceId name of the backend service, the host of the load balanced URL
+     */
+    public GradientLimiter client(String serviceId) {
+        return clients.computeIfAbsent(serviceId, id -> new GradientLimiter("client", id, properties, meterRegistry));
+    }
+
+    /**
+     * @return the value of the Retry-After header sent with rejected requests
+     */
+    public long retryAfterSeconds() {
+        return Math.max(1, (properties.getRetryAfter().toMillis() + 999) / 1000);
+    }
+}
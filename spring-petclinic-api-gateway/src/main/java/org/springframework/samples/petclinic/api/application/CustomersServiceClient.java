@@ -15,25 +15,52 @@
  */
 package org.springframework.samples.petclinic.api.application;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.samples.petclinic.api.dto.OwnerDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
+import static java.util.stream.Collectors.joining;
+
 /**
  * @author Maciej Szarlinski
  */
 @Component
-@RequiredArgsConstructor
 public class CustomersServiceClient {
 
-    private final WebClient.Builder webClientBuilder;
+    private final WebClient webClient;
+
+    private final SingleFlight<Integer, OwnerDetails> ownerFlights;
+
+    public CustomersServiceClient(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry) {
+        this.webClient = webClientBuilder.build();
+        this.ownerFlights = new SingleFlight<>("customers-service.owner", meterRegistry);
+    }
 
+    /**
+     * Concurrent requests for the same owner share a single call to customers-service. Each of them
+     * gets its own copy of the owner, as callers go on to add visits to it.
+     */
     public Mono<OwnerDetails> getOwner(final int ownerId) {
-        return webClientBuilder.build().get()
-            .uri("http://customers-service/owners/{ownerId}", ownerId)
+        return ownerFlights.execute(ownerId, () -> webClient.get()
+                .uri("http://customers-service/owners/{ownerId}", ownerId)
+                .retrieve()
+                .bodyToMono(OwnerDetails.class))
+            .map(OwnerDetails::copy);
+    }
+
+    public Flux<OwnerDetails> getOwners(final List<Integer> ownerIds) {
+        return webClient.get()
+            .uri("http://customers-service/owners?ownerId={ownerIds}", joinIds(ownerIds))
             .retrieve()
-            .bodyToMono(OwnerDetails.class);
+            .bodyToFlux(OwnerDetails.class);
+    }
+
+    private String joinIds(List<Integer> ownerIds) {
+        return ownerIds.stream().map(Object::toString).collect(joining(","));
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Latency budget of a gateway request, shared by all the downstream calls it makes.
+ * <p>
+ * Written to the Reactor context with {@link #writeTo(Context)}; the service {@code WebClient}s then
+ * send the remaining budget to the backends in the {@value #HEADER} header, so that they can give up on
+ * work nobody will wait for.
+ */
+public final class Deadline {
+
+    public static final String HEADER = "X-Request-Budget-Ms";
+
+    private final Duration budget;
+
+    private final long expiresAt;
+
+    private Deadline(Duration budget) {
+        this.budget = budget;
+        this.expiresAt = System.nanoTime() + budget.toNanos();
+    }
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(budget);
+    }
+
+    public static Optional<Deadline> from(ContextView context) {
+        return context.getOrEmpty(Deadline.class);
+    }
+
+    public Context writeTo(Context context) {
+        return context.put(Deadline.class, this);
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAt - System.nanoTime()));
+    }
+
+    /**
+     * @return the given share of the whole budget, or what is left of it if that is less
+     */
+    public Duration slice(double share) {
+        final Duration slice = Duration.ofNanos((long) (budget.toNanos() * share));
+        final Duration remaining = remaining();
+        return slice.compareTo(remaining) < 0 ? slice : remaining;
+    }
+
+    /**
+     * Fails the call with a {@link java.util.concurrent.TimeoutException} once its slice of the budget is spent.
+     */
+    public <T> Mono<T> within(Mono<T> call, double share) {
+        return Mono.defer(() -> call.timeout(slice(share)));
+    }
+}
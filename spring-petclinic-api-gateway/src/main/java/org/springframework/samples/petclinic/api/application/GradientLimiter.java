@@ -0,0 +1,183 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that adapts to the latency of the calls it lets through.
+ * <p>
+ * Two moving averages of the round-trip time are kept: a short one following recent calls and a long
+ * one standing for the latency of an idle backend. While recent calls are not slower than the long
+ * average, within {@code rtt-tolerance}, the limit grows by about its square root per call. When they
+ * get slower requests are queueing up in the backend, and the limit shrinks in proportion. Failures,
+ * timeouts and 503/504 answers cut the limit by {@code backoff-ratio}.
+ * <p>
+ * Calls over the limit are not queued: {@link #tryAcquire()} returns nothing and the caller sheds them.
+ */
+public class GradientLimiter {
+
+    private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+
+    private static final double LONG_ALPHA = 2.0 / (600 + 1);
+
+    private final ConcurrencyLimitProperties properties;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private volatile double limit;
+
+    private double shortRtt;
+
+    private double longRtt;
+
+    private final Counter rejected;
+
+    GradientLimiter(String kind, String name, ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.limit = properties.getInitialLimit();
+        this.rejected = Counter.builder("petclinic.gateway.concurrency.rejected")
+            .description("Requests shed because the concurrency limit was reached")
+            .tag("kind", kind)
+            .tag("name", name)
+            .register(meterRegistry);
+        Gauge.builder("petclinic.gateway.concurrency.limit", this, GradientLimiter::getLimit)
+            .description("Current adaptive concurrency limit")
+            .tag("kind", kind)
+            .tag("name", name)
+            .register(meterRegistry);
+        Gauge.builder("petclinic.gateway.concurrency.inflight", inflight, AtomicInteger::get)
+            .description("Requests in flight under the concurrency limit")
+            .tag("kind", kind)
+            .tag("name", name)
+            .register(meterRegistry);
+    }
+
+    /**
+     * @return a permit to be completed once the call is over, or nothing when the limit is reached
+     */
+    public Optional<Permit> tryAcquire() {
+        while (true) {
+            final int current = inflight.get();
+            if (current >= getLimit()) {
+                rejected.increment();
+                return Optional.empty();
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return Optional.of(new Permit(current + 1));
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized void onSample(long rttNanos, int inflightAtStart) {
+        if (longRtt == 0) {
+            shortRtt = rttNanos;
+            longRtt = rttNanos;
+            return;
+        }
+        shortRtt += (rttNanos - shortRtt) * SHORT_ALPHA;
+        longRtt += (rttNanos - longRtt) * LONG_ALPHA;
+        // After a slow period the long average lags behind, let it catch up with the faster calls
+        if (longRtt > 2 * shortRtt) {
+            longRtt *= 0.95;
+        }
+        // A backend that is far from the limit says nothing about how much more it could take
+        if (inflightAtStart < limit / 2) {
+            return;
+        }
+        final double gradient = Math.max(0.5, Math.min(1.0, properties.getRttTolerance() * longRtt / shortRtt));
+        final double estimate = limit * gradient + Math.sqrt(limit);
+        setLimit(limit * (1 - properties.getSmoothing()) + estimate * properties.getSmoothing());
+    }
+
+    synchronized void onDropped() {
+        setLimit(limit * properties.getBackoffRatio());
+    }
+
+    private void setLimit(double newLimit) {
+        limit = Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), newLimit));
+    }
+
+    /**
+     * One call let through by the limiter. Only the first completion counts.
+     */
+    public final class Permit {
+
+        private final long start = System.nanoTime();
+
+        private final int inflightAtStart;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int inflightAtStart) {
+            this.inflightAtStart = inflightAtStart;
+        }
+
+        /**
+         * Completes the call with the status answered by the backend: 503 and 504 mean it is overloaded.
+         */
+        public void complete(HttpStatusCode status) {
+            if (status != null && (status.value() == HttpStatus.SERVICE_UNAVAILABLE.value()
+                || status.value() == HttpStatus.GATEWAY_TIMEOUT.value())) {
+                dropped();
+            } else {
+                success();
+            }
+        }
+
+        public void success() {
+            if (release()) {
+                onSample(System.nanoTime() - start, inflightAtStart);
+            }
+        }
+
+        /**
+         * The call failed or timed out.
+         */
+        public void dropped() {
+            if (release()) {
+                onDropped();
+            }
+        }
+
+        /**
+         * The call was cancelled by the client: its latency says nothing about the backend.
+         */
+        public void ignore() {
+            release();
+        }
+
+        private boolean release() {
+            if (released.compareAndSet(false, true)) {
+                inflight.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
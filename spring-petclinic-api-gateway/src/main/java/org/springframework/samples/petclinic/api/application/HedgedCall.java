@@ -0,0 +1,41 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared by a call and its hedge through the {@link #ATTRIBUTE} request attribute: the load balancer records
+ * the instance each of them is sent to, and leaves those instances out when choosing where the hedge goes.
+ */
+public class HedgedCall {
+
+    public static final String ATTRIBUTE = HedgedCall.class.getName();
+
+    private final Set<URI> instances = ConcurrentHashMap.newKeySet();
+
+    public void sentTo(ServiceInstance instance) {
+        instances.add(instance.getUri());
+    }
+
+    public boolean wasSentTo(ServiceInstance instance) {
+        return instances.contains(instance.getUri());
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Sends a second copy of a call when the first one takes longer than the configured percentile of
+ * recent latencies, and keeps whichever answers first.
+ * <p>
+ * Hedges are paid for from a token budget: each call adds {@code budget-ratio} tokens, up to
+ * {@code max-burst}, and each hedge spends one. The extra load therefore stays below that ratio
+ * even when the backend slows down as a whole.
+ * <p>
+ * Both calls share a {@link HedgedCall}, which the caller passes on to the load balancer so that the hedge
+ * goes to another instance. When the first call fails before the hedge is sent, the hedge is sent at
+ * once if the failure {@link #isRetryable is worth} it and the budget allows; otherwise the failure is
+ * returned at once.
+ */
+class Hedger {
+
+    private static final int WINDOW = 256;
+
+    private static final int MIN_SAMPLES = 20;
+
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final HedgingProperties properties;
+
+    private final long[] samples = new long[WINDOW];
+
+    private int next;
+
+    private long recorded;
+
+    private double tokens;
+
+    private volatile long delayNanos;
+
+    private final Counter calls;
+
+    private final Counter hedged;
+
+    private final Counter won;
+
+    private final Counter budgetExhausted;
+
+    Hedger(String name, HedgingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.delayNanos = properties.getMaxDelay().toNanos();
+        this.calls = counter(name, "call", meterRegistry);
+        this.hedged = counter(name, "hedged", meterRegistry);
+        this.won = counter(name, "won", meterRegistry);
+        this.budgetExhausted = counter(name, "budget_exhausted", meterRegistry);
+        Gauge.builder("petclinic.gateway.hedge.delay", this, hedger -> hedger.delayNanos / 1e9)
+            .description("Delay after which a hedged call is sent, in seconds")
+            .tag("name", name)
+            .register(meterRegistry);
+    }
+
+    private static Counter counter(String name, String event, MeterRegistry meterRegistry) {
+        return Counter.builder("petclinic.gateway.hedge")
+            .description("Calls subject to hedging, by event")
+            .tag("name", name)
+            .tag("event", event)
+            .register(meterRegistry);
+    }
+
+    <T> Mono<T> execute(Function<HedgedCall, Mono<T>> call) {
+        if (!properties.isEnabled()) {
+            return Mono.defer(() -> call.apply(new HedgedCall()));
+        }
+        return Mono.defer(() -> {
+            calls.increment();
+            deposit();
+            final long start = System.nanoTime();
+            final HedgedCall hedgedCall = new HedgedCall();
+            final Sinks.One<Throwable> firstFailed = Sinks.one();
+            final Mono<T> first = Mono.defer(() -> call.apply(hedgedCall))
+                .doOnError(firstFailed::tryEmitValue);
+            // Whichever comes first of the delay and a failure of the first call
+            final Mono<Boolean> sendHedge = Mono.firstWithSignal(
+                Mono.delay(Duration.ofNanos(delayNanos)).thenReturn(true),
+                firstFailed.asMono().map(Hedger::isRetryable));
+            final Mono<T> hedge = sendHedge
+                .filter(Boolean::booleanValue)
+                .flatMap(send -> {
+                    if (!withdraw()) {
+                        budgetExhausted.increment();
+                        return Mono.empty();
+                    }
+                    hedged.increment();
+                    return Mono.defer(() -> call.apply(hedgedCall)).doOnNext(value -> won.increment());
+                });
+            return Mono.firstWithValue(first, hedge)
+                .doOnNext(value -> record(System.nanoTime() - start))
+                .onErrorMap(NoSuchElementException.class, Hedger::firstFailure);
+        });
+    }
+
+    /**
+     * Unwraps the failure of the first call, which the error of {@link Mono#firstWithValue} holds in its cause.
+     */
+    private static Throwable firstFailure(NoSuchElementException ex) {
+        final List<Throwable> failures = Exceptions.unwrapMultiple(ex.getCause());
+        return failures.isEmpty() ? ex : failures.get(0);
+    }
+
+    /**
+     * Only server errors and failures to reach the instance may go away on another instance.
+     * Client errors, and calls shed by the gateway itself, would fail the same way.
+     */
+    static boolean isRetryable(Throwable ex) {
+        if (ex instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError();
+        }
+        return ex instanceof WebClientRequestException;
+    }
+
+    private synchronized void deposit() {
+        tokens = Math.min(properties.getMaxBurst(), tokens + properties.getBudgetRatio());
+    }
+
+    private synchronized boolean withdraw() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    private synchronized void record(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % WINDOW;
+        recorded++;
+        if (recorded >= MIN_SAMPLES && recorded % RECOMPUTE_EVERY == 0) {
+            final long[] window = Arrays.copyOf(samples, (int) Math.min(recorded, WINDOW));
+            Arrays.sort(window);
+            final long percentile = window[(int) Math.min(window.length - 1, Math.ceil(properties.getPercentile() * window.length) - 1)];
+            delayNanos = Math.max(properties.getMinDelay().toNanos(), Math.min(properties.getMaxDelay().toNanos(), percentile));
+        }
+    }
+
+    Duration currentDelay() {
+        return Duration.ofNanos(delayNanos);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Request hedging of the visits-service lookups: when a call is slower than usual, a second identical
+ * call is sent, which the load balancer routes to another instance than the first, and the first answer wins.
+ */
+@Data
+@ConfigurationProperties(prefix = "petclinic.gateway.hedging")
+public class HedgingProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Latency percentile of recent calls after which the hedge is sent.
+     */
+    private double percentile = 0.95;
+
+    private Duration minDelay = Duration.ofMillis(20);
+
+    /**
+     * Also the delay used until enough calls have been observed.
+     */
+    private Duration maxDelay = Duration.ofMillis(500);
+
+    /**
+     * Hedges allowed per call, on average. Caps the extra load sent to the backend.
+     */
+    private double budgetRatio = 0.1;
+
+    /**
+     * Hedges that can be sent in a row once the budget has built up.
+     */
+    private int maxBurst = 10;
+}
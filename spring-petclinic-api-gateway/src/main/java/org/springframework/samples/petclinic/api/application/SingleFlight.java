@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls sharing the same key into a single downstream call.
+ * <p>
+ * The first subscriber for a key triggers the call; subscribers arriving while it is still in flight
+ * receive the same result. The entry is dropped as soon as the call terminates, so nothing is cached
+ * beyond the lifetime of the in-flight request.
+ */
+class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter executed;
+
+    private final Counter coalesced;
+
+    SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.executed = Counter.builder("petclinic.gateway.singleflight")
+            .description("Downstream calls grouped by single-flight outcome")
+            .tag("name", name)
+            .tag("result", "executed")
+            .register(meterRegistry);
+        this.coalesced = Counter.builder("petclinic.gateway.singleflight")
+            .description("Downstream calls grouped by single-flight outcome")
+            .tag("name", name)
+            .tag("result", "coalesced")
+            .register(meterRegistry);
+        Gauge.builder("petclinic.gateway.singleflight.inflight", inFlight, Map::size)
+            .description("Downstream calls currently in flight")
+            .tag("name", name)
+            .register(meterRegistry);
+    }
+
+    Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            final Mono<V> candidate = Mono.defer(call)
+                .doFinally(signal -> inFlight.remove(key))
+                .share();
+            final Mono<V> shared = inFlight.putIfAbsent(key, candidate);
+            if (shared == null) {
+                executed.increment();
+                return candidate;
+            }
+            coalesced.increment();
+            return shared;
+        });
+    }
+}
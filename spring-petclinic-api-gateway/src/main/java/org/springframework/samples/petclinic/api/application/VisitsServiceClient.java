@@ -15,7 +15,8 @@
  */
 package org.springframework.samples.petclinic.api.application;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.samples.petclinic.api.dto.VisitSummaries;
 import org.springframework.samples.petclinic.api.dto.Visits;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -29,20 +30,49 @@ import static java.util.stream.Collectors.joining;
  * @author Maciej Szarlinski
  */
 @Component
-@RequiredArgsConstructor
 public class VisitsServiceClient {
 
     // Could be changed for testing purpose
     private String hostname = "http://visits-service/";
 
-    private final WebClient.Builder webClientBuilder;
+    private final WebClient webClient;
 
+    private final SingleFlight<List<Integer>, Visits> visitsFlights;
+
+    private final SingleFlight<List<Integer>, VisitSummaries> summariesFlights;
+
+    private final Hedger visitsHedger;
+
+    public VisitsServiceClient(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry,
+                               HedgingProperties hedgingProperties) {
+        this.webClient = webClientBuilder.build();
+        this.visitsHedger = new Hedger("visits-service.visits", hedgingProperties, meterRegistry);
+        this.visitsFlights = new SingleFlight<>("visits-service.visits", meterRegistry);
+        this.summariesFlights = new SingleFlight<>("visits-service.summaries", meterRegistry);
+    }
+
+    /**
+     * Concurrent requests for the same set of pets share a single call to visits-service.
+     * That call is hedged when {@link HedgingProperties hedging} is enabled, the hedge going to another instance.
+     */
     public Mono<Visits> getVisitsForPets(final List<Integer> petIds) {
-        return webClientBuilder.build()
+        return visitsFlights.execute(List.copyOf(petIds), () -> visitsHedger.execute(hedgedCall -> webClient
             .get()
             .uri(hostname + "pets/visits?petId={petId}", joinIds(petIds))
+            .attribute(HedgedCall.ATTRIBUTE, hedgedCall)
+            .retrieve()
+            .bodyToMono(Visits.class)));
+    }
+
+    /**
+     * Visit counts and last visit dates only, for screens that do not show the visits themselves.
+     */
+    public Mono<VisitSummaries> getVisitSummariesForPets(final List<Integer> petIds) {
+        return summariesFlights.execute(List.copyOf(petIds), () -> webClient
+            .get()
+            .uri(hostname + "pets/visits/summary?petId={petId}", joinIds(petIds))
             .retrieve()
-            .bodyToMono(Visits.class);
+            .bodyToMono(VisitSummaries.class));
     }
 
     private String joinIds(List<Integer> petIds) {
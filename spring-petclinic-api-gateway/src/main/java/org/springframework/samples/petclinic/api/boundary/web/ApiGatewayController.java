@@ -15,62 +15,232 @@
  */
 package org.springframework.samples.petclinic.api.boundary.web;
 
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker;
 import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.api.application.ConcurrencyLimitExceededException;
 import org.springframework.samples.petclinic.api.application.CustomersServiceClient;
+import org.springframework.samples.petclinic.api.application.Deadline;
 import org.springframework.samples.petclinic.api.application.VisitsServiceClient;
 import org.springframework.samples.petclinic.api.dto.OwnerDetails;
+import org.springframework.samples.petclinic.api.dto.PetDetails;
+import org.springframework.samples.petclinic.api.dto.VisitDetails;
+import org.springframework.samples.petclinic.api.dto.VisitSummaries;
+import org.springframework.samples.petclinic.api.dto.VisitSummary;
 import org.springframework.samples.petclinic.api.dto.Visits;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
+ * Aggregates the responses of the backend services.
+ * <p>
+ * Each request gets a latency {@link Deadline budget}, shortened by the {@value Deadline#HEADER} header
+ * when the caller sends one, down to a minimum. The owner lookup may use part of it, the visits lookup gets
+ * what is left. When visits-service fails or runs out of budget the owner is returned anyway, with
+ * {@code visits} listed in its {@code degraded} sections, rather than waiting for the slowest dependency.
+ * <p>
+ * The budget is applied outside the visits-service circuit breakers, which only record the failures of
+ * visits-service itself: a caller sending short budgets must not open the circuit for everyone else.
+ * When customers-service is at its concurrency limit the request is shed with a 503.
+ *
  * @author Maciej Szarlinski
  */
 @RestController
-@RequiredArgsConstructor
 @RequestMapping("/api/gateway")
 public class ApiGatewayController {
 
+    static final String VISITS_SECTION = "visits";
+
     private final CustomersServiceClient customersServiceClient;
 
     private final VisitsServiceClient visitsServiceClient;
 
     private final ReactiveCircuitBreakerFactory cbFactory;
 
+    private final Duration budget;
+
+    private final Duration minBudget;
+
+    private final double ownerShare;
+
+    public ApiGatewayController(CustomersServiceClient customersServiceClient,
+                                VisitsServiceClient visitsServiceClient,
+                                ReactiveCircuitBreakerFactory cbFactory,
+                                @Value("${petclinic.gateway.aggregation.budget:2s}") Duration budget,
+                                @Value("${petclinic.gateway.aggregation.min-budget:100ms}") Duration minBudget,
+                                @Value("${petclinic.gateway.aggregation.owner-share:0.5}") double ownerShare) {
+        this.customersServiceClient = customersServiceClient;
+        this.visitsServiceClient = visitsServiceClient;
+        this.cbFactory = cbFactory;
+        this.budget = budget;
+        this.minBudget = minBudget;
+        this.ownerShare = ownerShare;
+    }
+
+    /**
+     * With {@code visitSummary=true}, each pet carries its number of visits and last visit date instead
+     * of its full visit history.
+     */
     @GetMapping(value = "owners/{ownerId}")
-    public Mono<OwnerDetails> getOwnerDetails(final @PathVariable int ownerId) {
-        return customersServiceClient.getOwner(ownerId)
-            .flatMap(owner ->
-                visitsServiceClient.getVisitsForPets(owner.getPetIds())
-                    .transform(it -> {
-                        ReactiveCircuitBreaker cb = cbFactory.create("getOwnerDetails");
-                        return cb.run(it, throwable -> emptyVisitsForPets());
+    public Mono<OwnerDetails> getOwnerDetails(
+        final @PathVariable int ownerId,
+        final @RequestParam(value = "visitSummary", defaultValue = "false") boolean visitSummary,
+        final @RequestHeader(value = Deadline.HEADER, required = false) Long budgetMillis) {
+        final Deadline deadline = deadline(budgetMillis);
+        return withinOwnerShare(deadline, customersServiceClient.getOwner(ownerId))
+            .flatMap(owner -> visitSummary ? addVisitSummaries(owner, deadline) : addVisits(owner, deadline))
+            .contextWrite(deadline::writeTo);
+    }
+
+    /**
+     * Aggregates the details of several owners with a constant fan-out: one call to customers-service
+     * for all owners and one call to visits-service for all of their pets.
+     */
+    @GetMapping(value = "owners", params = "ids")
+    public Mono<List<OwnerDetails>> getOwnersDetails(
+        final @RequestParam("ids") List<Integer> ownerIds,
+        final @RequestHeader(value = Deadline.HEADER, required = false) Long budgetMillis) {
+        final Deadline deadline = deadline(budgetMillis);
+        return withinOwnerShare(deadline, customersServiceClient.getOwners(ownerIds).collectList())
+            .flatMap(owners -> {
+                final List<Integer> petIds = owners.stream()
+                    .flatMap(owner -> owner.getPetIds().stream())
+                    .collect(Collectors.toList());
+                if (petIds.isEmpty()) {
+                    return Mono.just(owners);
+                }
+                return withinVisitsShare(deadline, "getOwnersDetails", visitsServiceClient.getVisitsForPets(petIds), () -> {
+                        owners.forEach(owner -> owner.getDegraded().add(VISITS_SECTION));
+                        return emptyVisitsForPets();
                     })
-                    .map(addVisitsToOwner(owner))
-            );
+                    .map(visits -> {
+                        addVisitsToOwners(owners, visits);
+                        return owners;
+                    });
+            })
+            .contextWrite(deadline::writeTo);
+    }
+
+    @ExceptionHandler
+    ResponseEntity<Void> handleConcurrencyLimitExceeded(ConcurrencyLimitExceededException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+            .build();
+    }
 
+    private Deadline deadline(Long budgetMillis) {
+        if (budgetMillis != null && budgetMillis < budget.toMillis()) {
+            return Deadline.after(Duration.ofMillis(Math.max(budgetMillis, minBudget.toMillis())));
+        }
+        return Deadline.after(budget);
+    }
+
+    /**
+     * Without owners there is nothing to return, so running out of budget here fails the whole request.
+     */
+    private <T> Mono<T> withinOwnerShare(Deadline deadline, Mono<T> call) {
+        return deadline.within(call, ownerShare)
+            .onErrorMap(TimeoutException.class,
+                ex -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "customers-service did not answer in time"));
+    }
+
+    /**
+     * Runs a visits-service call through the given circuit breaker, within what is left of the budget.
+     * Running out of budget degrades the response like a failure, without being recorded by the breaker.
+     */
+    private <T> Mono<T> withinVisitsShare(Deadline deadline, String circuitBreaker, Mono<T> call, Supplier<Mono<T>> degraded) {
+        final ReactiveCircuitBreaker cb = cbFactory.create(circuitBreaker);
+        return deadline.within(cb.run(call, throwable -> degraded.get()), 1.0)
+            .onErrorResume(TimeoutException.class, ex -> degraded.get());
+    }
+
+    private Mono<OwnerDetails> addVisits(OwnerDetails owner, Deadline deadline) {
+        return withinVisitsShare(deadline, "getOwnerDetails", visitsServiceClient.getVisitsForPets(owner.getPetIds()), () -> {
+                owner.getDegraded().add(VISITS_SECTION);
+                return emptyVisitsForPets();
+            })
+            .map(addVisitsToOwner(owner));
+    }
+
+    private Mono<OwnerDetails> addVisitSummaries(OwnerDetails owner, Deadline deadline) {
+        final Mono<OwnerDetails> withSummaries = visitsServiceClient.getVisitSummariesForPets(owner.getPetIds())
+            .map(summaries -> {
+                addVisitSummariesToOwner(owner, summaries);
+                return owner;
+            });
+        return withinVisitsShare(deadline, "getOwnerDetails", withSummaries, () -> {
+            owner.getDegraded().add(VISITS_SECTION);
+            return Mono.just(owner);
+        });
     }
 
     private Function<Visits, OwnerDetails> addVisitsToOwner(OwnerDetails owner) {
         return visits -> {
-            owner.getPets()
-                .forEach(pet -> pet.getVisits()
-                    .addAll(visits.getItems().stream()
-                        .filter(v -> v.getPetId() == pet.getId())
-                        .collect(Collectors.toList()))
-                );
+            addVisitsToOwners(Collections.singletonList(owner), visits);
             return owner;
         };
     }
 
+    /**
+     * Groups the visits by pet id in a single pass, then attaches each group to its pet.
+     * Runs in O(pets + visits) instead of scanning every visit for every pet.
+     */
+    static void addVisitsToOwners(Collection<OwnerDetails> owners, Visits visits) {
+        final List<VisitDetails> items = visits.getItems();
+        final Map<Integer, List<VisitDetails>> visitsByPetId = new HashMap<>();
+        for (VisitDetails visit : items) {
+            if (visit.getPetId() != null) {
+                visitsByPetId.computeIfAbsent(visit.getPetId(), petId -> new ArrayList<>()).add(visit);
+            }
+        }
+        for (OwnerDetails owner : owners) {
+            for (PetDetails pet : owner.getPets()) {
+                final List<VisitDetails> petVisits = visitsByPetId.get(pet.getId());
+                if (petVisits != null) {
+                    pet.getVisits().addAll(petVisits);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pets absent from the summaries have no visits. When visits-service is unavailable the owner is
+     * returned as is, and the pets are left without counts.
+     */
+    static void addVisitSummariesToOwner(OwnerDetails owner, VisitSummaries summaries) {
+        final Map<Integer, VisitSummary> summariesByPetId = new HashMap<>();
+        for (VisitSummary summary : summaries.getItems()) {
+            summariesByPetId.put(summary.getPetId(), summary);
+        }
+        for (PetDetails pet : owner.getPets()) {
+            final VisitSummary summary = summariesByPetId.get(pet.getId());
+            pet.setVisitCount(summary != null ? summary.getCount() : 0L);
+            pet.setLastVisitDate(summary != null ? summary.getLastVisitDate() : null);
+        }
+    }
+
     private Mono<Visits> emptyVisitsForPets() {
         return Mono.just(new Visits());
     }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.web;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory store of the responses cached by {@link ResponseCacheFilter}, bounded by the total size of
+ * the bodies. The least recently used responses are evicted first.
+ * <p>
+ * Each invalidation bumps the generation of its rule. A response fetched while an invalidation was
+ * going on may predate it, so it is only stored if the generation did not change in the meantime.
+ */
+class ResponseCache {
+
+    private final long maxSize;
+
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private long size;
+
+    ResponseCache(long maxSize, MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        Gauge.builder("petclinic.gateway.response.cache.size", this, ResponseCache::size)
+            .description("Total size of the cached response bodies, in bytes")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("petclinic.gateway.response.cache.entries", this, ResponseCache::entries)
+            .description("Number of cached responses")
+            .register(meterRegistry);
+    }
+
+    /**
+     * @param rule      name of the rule the response is cached by
+     * @param variables variables extracted from the path by the rule, used to invalidate it
+     * @param origin    backend URL the response was fetched from, such as {@code http://vets-service/vets},
+     *                  or {@code null} when it is not known and the response cannot be revalidated
+     * @param storedAt  {@link System#nanoTime()} at which the response was received
+     */
+    record CachedResponse(String rule, Map<String, String> variables, HttpHeaders headers, byte[] body,
+                          URI origin, long storedAt, AtomicBoolean revalidating) {
+
+        CachedResponse(String rule, Map<String, String> variables, HttpHeaders headers, byte[] body, URI origin) {
+            this(rule, variables, headers, body, origin, System.nanoTime(), new AtomicBoolean());
+        }
+    }
+
+    synchronized CachedResponse get(String key) {
+        return entries.get(key);
+    }
+
+    long generation(String rule) {
+        return generations.computeIfAbsent(rule, name -> new AtomicLong()).get();
+    }
+
+    /**
+     * @param generation generation of the rule when the request was sent
+     * @return whether the response was stored
+     */
+    synchronized boolean put(String key, CachedResponse response, long generation) {
+        if (response.body().length > maxSize || generation(response.rule()) != generation) {
+            return false;
+        }
+        final CachedResponse previous = entries.put(key, response);
+        if (previous != null) {
+            size -= previous.body().length;
+        }
+        size += response.body().length;
+        final Iterator<CachedResponse> eldest = entries.values().iterator();
+        while (size > maxSize && eldest.hasNext()) {
+            size -= eldest.next().body().length;
+            eldest.remove();
+        }
+        return true;
+    }
+
+    /**
+     * Removes the responses of the rule whose path variables match the given ones. Variables unknown to
+     * the rule are ignored, so empty variables remove every response of the rule.
+     *
+     * @return the number of removed responses
+     */
+    synchronized int invalidate(String rule, Map<String, String> variables) {
+        generations.computeIfAbsent(rule, name -> new AtomicLong()).incrementAndGet();
+        int removed = 0;
+        final Iterator<CachedResponse> responses = entries.values().iterator();
+        while (responses.hasNext()) {
+            final CachedResponse response = responses.next();
+            if (response.rule().equals(rule) && matches(response.variables(), variables)) {
+                size -= response.body().length;
+                responses.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private static boolean matches(Map<String, String> cached, Map<String, String> written) {
+        for (Map.Entry<String, String> variable : written.entrySet()) {
+            final String value = cached.get(variable.getKey());
+            if (value != null && !value.equals(variable.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    synchronized int entries() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.samples.petclinic.api.boundary.web.ResponseCache.CachedResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Caches the {@code GET} responses of the gateway routes matching one of the configured
+ * {@link ResponseCacheProperties.Rule rules}, for the time-to-live of the rule.
+ * <p>
+ * Responses are keyed on path, query and the values of the request headers the rule varies on. Once
+ * expired, a response is still served during the {@code stale-while-revalidate} period while a single
+ * background request, sent on its own to the backend the response came from, refreshes it. Writes
+ * proxied to a path matching {@code invalidate-on} drop the responses they affect.
+ * <p>
+ * A request whose {@code If-None-Match} matches the ETag of a fresh response is answered
+ * {@code 304 Not Modified}; other conditional requests, requests with {@code Cache-Control: no-cache}
+ * and responses that are not cacheable go through to the backend, which answers conditional requests
+ * itself. Bodies are buffered up to {@code max-entry-size} only: larger responses are written through
+ * as they come, and not cached.
+ * <p>
+ * Served responses carry an {@value #CACHE_HEADER} header of {@code HIT}, {@code STALE} or
+ * {@code MISS}, and the same outcomes are counted per rule by {@code petclinic.gateway.response.cache}.
+ */
+@Component
+@Slf4j
+class ResponseCacheFilter implements GlobalFilter, Ordered {
+
+    static final String CACHE_HEADER = "X-Cache";
+
+    private static final Set<HttpMethod> WRITES = Set.of(HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH, HttpMethod.DELETE);
+
+    private static final List<String> STORED_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_ENCODING,
+        HttpHeaders.CONTENT_LANGUAGE, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.CACHE_CONTROL, HttpHeaders.VARY);
+
+    private final boolean enabled;
+
+    private final long maxEntrySize;
+
+    private final ResponseCache cache;
+
+    private final List<Rule> rules;
+
+    private final WebClient webClient;
+
+    ResponseCacheFilter(ResponseCacheProperties properties, MeterRegistry meterRegistry, WebClient.Builder webClientBuilder) {
+        this.enabled = properties.isEnabled();
+        this.maxEntrySize = properties.getMaxEntrySize().toBytes();
+        this.cache = new ResponseCache(properties.getMaxSize().toBytes(), meterRegistry);
+        this.rules = properties.getRules().stream().map(rule -> new Rule(rule, meterRegistry)).toList();
+        this.webClient = webClientBuilder.build();
+    }
+
+    /**
+     * Runs before the route filters, which rewrite the path, and before the response is written.
+     * Cache hits are therefore not counted against the concurrency limit of the route.
+     */
+    @Override
+    public int getOrder() {
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        final ServerHttpRequest request = exchange.getRequest();
+        if (!enabled || rules.isEmpty()) {
+            return chain.filter(exchange);
+        }
+        final PathContainer path = request.getPath().pathWithinApplication();
+        if (WRITES.contains(request.getMethod())) {
+            return chain.filter(exchange).doFinally(signal -> invalidate(path));
+        }
+        if (!HttpMethod.GET.equals(request.getMethod())) {
+            return chain.filter(exchange);
+        }
+        for (Rule rule : rules) {
+            final PathPattern.PathMatchInfo match = rule.path.matchAndExtract(path);
+            if (match != null) {
+                return filter(exchange, chain, rule, match.getUriVariables());
+            }
+        }
+        return chain.filter(exchange);
+    }
+
+    private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain, Rule rule, Map<String, String> variables) {
+        final HttpHeaders requestHeaders = exchange.getRequest().getHeaders();
+        if (requestHeaders.containsKey(HttpHeaders.IF_MODIFIED_SINCE)
+            || requestHeaders.getCacheControl() != null && requestHeaders.getCacheControl().contains("no-cache")) {
+            rule.bypass.increment();
+            return chain.filter(exchange);
+        }
+        final String key = key(exchange.getRequest(), rule);
+        final CachedResponse cached = cache.get(key);
+        if (requestHeaders.containsKey(HttpHeaders.IF_NONE_MATCH)) {
+            if (cached != null && System.nanoTime() - cached.storedAt() < rule.ttl
+                && matches(requestHeaders.getIfNoneMatch(), cached.headers().getETag())) {
+                rule.hit.increment();
+                return notModified(exchange.getResponse(), cached);
+            }
+            rule.bypass.increment();
+            return chain.filter(exchange);
+        }
+        if (cached != null) {
+            final long age = System.nanoTime() - cached.storedAt();
+            if (age < rule.ttl) {
+                rule.hit.increment();
+                return write(exchange.getResponse(), cached, "HIT");
+            }
+            if (age < rule.ttl + rule.staleWhileRevalidate) {
+                rule.stale.increment();
+                if (cached.origin() != null && cached.revalidating().compareAndSet(false, true)) {
+                    revalidate(exchange.getRequest(), rule, variables, key, cached);
+                }
+                return write(exchange.getResponse(), cached, "STALE");
+            }
+        }
+        rule.miss.increment();
+        exchange.getResponse().getHeaders().set(CACHE_HEADER, "MISS");
+        final CachingResponse response = new CachingResponse(exchange, rule, variables, key, cache.generation(rule.name));
+        return chain.filter(exchange.mutate().response(response).build());
+    }
+
+    /**
+     * Sends a new request to the backend the stale response came from, with the request headers the rule
+     * varies on, and stores the response. The client exchange, which is already answered, is left alone.
+     */
+    private void revalidate(ServerHttpRequest request, Rule rule, Map<String, String> variables, String key,
+                            CachedResponse stale) {
+        final long generation = cache.generation(rule.name);
+        webClient.get()
+            .uri(stale.origin())
+            .headers(headers -> rule.vary.forEach(header -> {
+                final List<String> values = request.getHeaders().get(header);
+                if (values != null) {
+                    headers.put(header, values);
+                }
+            }))
+            .exchangeToMono(response -> {
+                if (!HttpStatus.OK.equals(response.statusCode())) {
+                    return response.releaseBody();
+                }
+                // Larger bodies fail the revalidation, and the stale response expires as it would have
+                return DataBufferUtils.join(response.body(BodyExtractors.toDataBuffers()), maxBufferedSize())
+                    .map(ResponseCacheFilter::toBytes)
+                    .defaultIfEmpty(new byte[0])
+                    .doOnNext(body -> store(response.headers().asHttpHeaders(), body, rule, variables, key,
+                        stale.origin(), generation))
+                    .then();
+            })
+            .doFinally(signal -> stale.revalidating().set(false))
+            .subscribe(null, ex -> log.debug("Could not revalidate cached response {}: {}", key, ex.toString()));
+    }
+
+    /**
+     * URL the request was routed to, before load balancing: the path and query are the rewritten ones, and
+     * the host of an {@code lb://vets-service} route is the service id, which the load balanced
+     * {@link WebClient} resolves to an instance.
+     */
+    private static URI origin(ServerWebExchange exchange) {
+        final Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        final URI requestUrl = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+        if (route == null || requestUrl == null) {
+            return null;
+        }
+        final URI routeUri = route.getUri();
+        return UriComponentsBuilder.fromUri(requestUrl)
+            .scheme("lb".equals(routeUri.getScheme()) ? "http" : routeUri.getScheme())
+            .host(routeUri.getHost())
+            .port(routeUri.getPort())
+            .build(true)
+            .toUri();
+    }
+
+    private void store(HttpHeaders responseHeaders, byte[] body, Rule rule, Map<String, String> variables, String key,
+                       URI origin, long generation) {
+        if (isCacheable(responseHeaders, rule, body.length)) {
+            final HttpHeaders headers = new HttpHeaders();
+            STORED_HEADERS.forEach(header -> {
+                if (responseHeaders.containsKey(header)) {
+                    headers.put(header, responseHeaders.get(header));
+                }
+            });
+            cache.put(key, new CachedResponse(rule.name, variables, headers, body, origin), generation);
+        }
+    }
+
+    private int maxBufferedSize() {
+        return (int) Math.min(maxEntrySize, Integer.MAX_VALUE);
+    }
+
+    private static byte[] toBytes(DataBuffer buffer) {
+        final byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        DataBufferUtils.release(buffer);
+        return bytes;
+    }
+
+    private static Mono<Void> write(ServerHttpResponse response, CachedResponse cached, String outcome) {
+        response.setStatusCode(HttpStatus.OK);
+        final HttpHeaders headers = response.getHeaders();
+        headers.putAll(cached.headers());
+        headers.setContentLength(cached.body().length);
+        headers.set(HttpHeaders.AGE, Long.toString(Duration.ofNanos(System.nanoTime() - cached.storedAt()).toSeconds()));
+        headers.set(CACHE_HEADER, outcome);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    private static Mono<Void> notModified(ServerHttpResponse response, CachedResponse cached) {
+        response.setStatusCode(HttpStatus.NOT_MODIFIED);
+        final HttpHeaders headers = response.getHeaders();
+        for (String header : List.of(HttpHeaders.ETAG, HttpHeaders.CACHE_CONTROL, HttpHeaders.VARY)) {
+            if (cached.headers().containsKey(header)) {
+                headers.put(header, cached.headers().get(header));
+            }
+        }
+        headers.set(HttpHeaders.AGE, Long.toString(Duration.ofNanos(System.nanoTime() - cached.storedAt()).toSeconds()));
+        headers.set(CACHE_HEADER, "HIT");
+        return response.setComplete();
+    }
+
+    /**
+     * Weak comparison, as {@code If-None-Match} calls for.
+     */
+    private static boolean matches(List<String> ifNoneMatch, String etag) {
+        if (etag == null) {
+            return false;
+        }
+        final String opaqueTag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        return ifNoneMatch.stream().anyMatch(candidate -> candidate.equals("*")
+            || (candidate.startsWith("W/") ? candidate.substring(2) : candidate).equals(opaqueTag));
+    }
+
+    private void invalidate(PathContainer path) {
+        for (Rule rule : rules) {
+            for (PathPattern pattern : rule.invalidateOn) {
+                final PathPattern.PathMatchInfo match = pattern.matchAndExtract(path);
+                if (match != null) {
+                    final int removed = cache.invalidate(rule.name, match.getUriVariables());
+                    rule.invalidations.increment(removed);
+                    log.debug("Write to {} invalidated {} cached {} responses", path, removed, rule.name);
+                    break;
+                }
+            }
+        }
+    }
+
+    private static String key(ServerHttpRequest request, Rule rule) {
+        final StringBuilder key = new StringBuilder(rule.name).append(' ').append(request.getPath().value());
+        if (request.getURI().getRawQuery() != null) {
+            key.append('?').append(request.getURI().getRawQuery());
+        }
+        for (String header : rule.vary) {
+            key.append('\n').append(header).append(": ").append(String.join(",", request.getHeaders().getOrEmpty(header)));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Whether the backend allows the gateway to store the response, and the cache key covers what it varies on.
+     */
+    private boolean isCacheable(HttpHeaders headers, Rule rule, int size) {
+        if (size > maxEntrySize || headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return false;
+        }
+        final String cacheControl = headers.getCacheControl();
+        if (cacheControl != null && (cacheControl.contains("no-store") || cacheControl.contains("private")
+            || cacheControl.contains("no-cache"))) {
+            return false;
+        }
+        for (String vary : headers.getVary()) {
+            if (!rule.vary.contains(vary.toLowerCase(Locale.ROOT))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Rule {
+
+        private static final PathPatternParser PARSER = PathPatternParser.defaultInstance;
+
+        private final String name;
+
+        private final PathPattern path;
+
+        private final long ttl;
+
+        private final long staleWhileRevalidate;
+
+        private final List<PathPattern> invalidateOn;
+
+        private final Set<String> vary;
+
+        private final Counter hit;
+
+        private final Counter stale;
+
+        private final Counter miss;
+
+        private final Counter bypass;
+
+        private final Counter invalidations;
+
+        Rule(ResponseCacheProperties.Rule rule, MeterRegistry meterRegistry) {
+            if (!StringUtils.hasText(rule.getName()) || !StringUtils.hasText(rule.getPath())) {
+                throw new IllegalArgumentException("Response cache rules need a name and a path");
+            }
+            this.name = rule.getName();
+            this.path = PARSER.parse(rule.getPath());
+            this.ttl = rule.getTtl().toNanos();
+            this.staleWhileRevalidate = rule.getStaleWhileRevalidate().toNanos();
+            this.invalidateOn = rule.getInvalidateOn().stream().map(PARSER::parse).toList();
+            // Sorted so that the key does not depend on the configured order
+            this.vary = rule.getVary().stream().map(header -> header.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toCollection(TreeSet::new));
+            this.hit = counter(meterRegistry, "hit");
+            this.stale = counter(meterRegistry, "stale");
+            this.miss = counter(meterRegistry, "miss");
+            this.bypass = counter(meterRegistry, "bypass");
+            this.invalidations = Counter.builder("petclinic.gateway.response.cache.invalidations")
+                .description("Cached responses dropped because of a write to the same resources")
+                .tag("name", name)
+                .register(meterRegistry);
+        }
+
+        private Counter counter(MeterRegistry meterRegistry, String result) {
+            return Counter.builder("petclinic.gateway.response.cache")
+                .description("Requests matching a response cache rule, by result")
+                .tag("name", name)
+                .tag("result", result)
+                .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Stores the body of a {@code 200 OK} response as it is written, if it can be cached. The body is held
+     * back until it is complete or exceeds {@code max-entry-size}; in the latter case what was held back
+     * and the rest are written through uncached.
+     */
+    private final class CachingResponse extends ServerHttpResponseDecorator {
+
+        private final ServerWebExchange exchange;
+
+        private final Rule rule;
+
+        private final Map<String, String> variables;
+
+        private final String key;
+
+        private final long generation;
+
+        CachingResponse(ServerWebExchange exchange, Rule rule, Map<String, String> variables, String key, long generation) {
+            super(exchange.getResponse());
+            this.exchange = exchange;
+            this.rule = rule;
+            this.variables = variables;
+            this.key = key;
+            this.generation = generation;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (!HttpStatus.OK.equals(getStatusCode()) || getHeaders().getContentLength() > maxEntrySize) {
+                return super.writeWith(body);
+            }
+            // A single list holding the whole body, or the first buffers up to the one exceeding the limit
+            // followed by a list per buffer
+            final AtomicLong size = new AtomicLong();
+            return Flux.<DataBuffer>from(body)
+                .bufferUntil(buffer -> size.addAndGet(buffer.readableByteCount()) > maxEntrySize)
+                .switchOnFirst((first, buffers) -> {
+                    if (first.isOnError() || size.get() > maxEntrySize) {
+                        return super.writeWith(buffers.flatMapIterable(Function.identity()));
+                    }
+                    return DataBufferUtils.join(Flux.fromIterable(first.hasValue() ? first.get() : List.<DataBuffer>of()))
+                        .map(ResponseCacheFilter::toBytes)
+                        .defaultIfEmpty(new byte[0])
+                        .flatMap(bytes -> {
+                            store(getHeaders(), bytes, rule, variables, key, origin(exchange), generation);
+                            return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                        });
+                })
+                .then();
+        }
+    }
+}
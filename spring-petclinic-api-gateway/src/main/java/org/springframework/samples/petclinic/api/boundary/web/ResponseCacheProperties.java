@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.web;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caching of the {@code GET} responses proxied by the gateway routes, see {@link ResponseCacheFilter}.
+ */
+@Data
+@ConfigurationProperties(prefix = "petclinic.gateway.response-cache")
+public class ResponseCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Total size of the cached bodies. Least recently used responses are evicted beyond it.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(16);
+
+    /**
+     * Larger responses are never cached, and are written through without being buffered past it.
+     */
+    private DataSize maxEntrySize = DataSize.ofKilobytes(256);
+
+    private List<Rule> rules = new ArrayList<>();
+
+    @Data
+    public static class Rule {
+
+        /**
+         * Used in metrics.
+         */
+        private String name;
+
+        /**
+         * Path pattern of the cached requests, such as {@code /api/customer/owners/{ownerId}}.
+         */
+        private String path;
+
+        private Duration ttl = Duration.ofMinutes(1);
+
+        /**
+         * How long after the ttl a stale response is still served while it is refreshed in the background.
+         */
+        private Duration staleWhileRevalidate = Duration.ZERO;
+
+        /**
+         * Path patterns of the {@code POST}, {@code PUT}, {@code PATCH} and {@code DELETE} requests that
+         * invalidate the cached responses. Variables named as in {@link #path} only invalidate the
+         * responses with the same values, so a write to {@code /api/customer/owners/{ownerId}/**}
+         * only drops the cached owner it is about.
+         */
+        private List<String> invalidateOn = new ArrayList<>();
+
+        /**
+         * Request headers the responses vary on, part of the cache key.
+         */
+        private List<String> vary = new ArrayList<>(List.of("Accept", "Accept-Encoding"));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.web;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.RouteToRequestUrlFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.samples.petclinic.api.application.ConcurrencyLimiters;
+import org.springframework.samples.petclinic.api.application.GradientLimiter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Admission control in front of the {@code spring.cloud.gateway.routes}: requests beyond the adaptive
+ * concurrency limit of their route are answered with a 503 and a Retry-After header instead of
+ * queueing up in the gateway.
+ */
+@Component
+class RouteConcurrencyLimitFilter implements GlobalFilter, Ordered {
+
+    private final ConcurrencyLimiters limiters;
+
+    RouteConcurrencyLimitFilter(ConcurrencyLimiters limiters) {
+        this.limiters = limiters;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        final Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        if (!limiters.isEnabled() || route == null) {
+            return chain.filter(exchange);
+        }
+        final Optional<GradientLimiter.Permit> permit = limiters.route(route.getId()).tryAcquire();
+        if (permit.isEmpty()) {
+            final ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(limiters.retryAfterSeconds()));
+            return response.setComplete();
+        }
+        return chain.filter(exchange)
+            .doOnSuccess(done -> permit.get().complete(exchange.getResponse().getStatusCode()))
+            .doOnError(ex -> permit.get().dropped())
+            .doOnCancel(() -> permit.get().ignore());
+    }
+
+    /**
+     * Before the request is resolved to a service instance and proxied.
+     */
+    @Override
+    public int getOrder() {
+        return RouteToRequestUrlFilter.ROUTE_TO_URL_FILTER_ORDER - 1;
+    }
+}
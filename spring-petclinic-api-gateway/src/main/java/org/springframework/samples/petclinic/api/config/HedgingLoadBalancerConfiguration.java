@@ -0,0 +1,113 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.ReactiveDiscoveryClient;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.DelegatingServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.samples.petclinic.api.application.HedgedCall;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Load balancer configuration of each backend service, used when hedging is enabled: a hedge is never sent
+ * to the instance its first call went to. Not a {@code @Configuration}, so that only the load balancer
+ * contexts pick it up.
+ */
+class HedgingLoadBalancerConfiguration {
+
+    @Bean
+    @ConditionalOnBean(ReactiveDiscoveryClient.class)
+    @ConditionalOnProperty("petclinic.gateway.hedging.enabled")
+    ServiceInstanceListSupplier hedgeAwareServiceInstanceListSupplier(ConfigurableApplicationContext context) {
+        // The same instances as the default configuration, the filtering being applied after the caching
+        return new HedgeAwareServiceInstanceListSupplier(ServiceInstanceListSupplier.builder()
+            .withDiscoveryClient()
+            .withCaching()
+            .build(context));
+    }
+
+    @Bean
+    @ConditionalOnProperty("petclinic.gateway.hedging.enabled")
+    LoadBalancerLifecycle<RequestDataContext, Object, ServiceInstance> hedgedCallLifecycle() {
+        return new HedgedCallLifecycle();
+    }
+
+    private static Optional<HedgedCall> hedgedCall(Request<?> request) {
+        return request != null && request.getContext() instanceof RequestDataContext context
+            && context.getClientRequest() != null
+            && context.getClientRequest().getAttributes().get(HedgedCall.ATTRIBUTE) instanceof HedgedCall hedgedCall
+            ? Optional.of(hedgedCall) : Optional.empty();
+    }
+
+    /**
+     * Leaves out the instances a {@link HedgedCall} was already sent to. When no other instance is left,
+     * the hedge fails with a 503 and the first call answers alone.
+     */
+    static class HedgeAwareServiceInstanceListSupplier extends DelegatingServiceInstanceListSupplier {
+
+        HedgeAwareServiceInstanceListSupplier(ServiceInstanceListSupplier delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Flux<List<ServiceInstance>> get() {
+            return delegate.get();
+        }
+
+        @Override
+        public Flux<List<ServiceInstance>> get(Request request) {
+            return hedgedCall(request)
+                .map(hedgedCall -> delegate.get(request).map(instances -> instances.stream()
+                    .filter(instance -> !hedgedCall.wasSentTo(instance))
+                    .toList()))
+                .orElseGet(() -> delegate.get(request));
+        }
+    }
+
+    /**
+     * Records the instance chosen for each call carrying a {@link HedgedCall}.
+     */
+    static class HedgedCallLifecycle implements LoadBalancerLifecycle<RequestDataContext, Object, ServiceInstance> {
+
+        @Override
+        public void onStart(Request<RequestDataContext> request) {
+        }
+
+        @Override
+        public void onStartRequest(Request<RequestDataContext> request, Response<ServiceInstance> lbResponse) {
+            if (lbResponse.hasServer()) {
+                hedgedCall(request).ifPresent(hedgedCall -> hedgedCall.sentTo(lbResponse.getServer()));
+            }
+        }
+
+        @Override
+        public void onComplete(CompletionContext<Object, ServiceInstance, RequestDataContext> completionContext) {
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the HTTP client used by the gateway to call the backend services.
+ */
+@Data
+@ConfigurationProperties(prefix = "petclinic.gateway.client")
+public class ServiceClientProperties {
+
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    private Duration responseTimeout = Duration.ofSeconds(3);
+
+    private boolean keepAlive = true;
+
+    private final Pool pool = new Pool();
+
+    private final H2c h2c = new H2c();
+
+    /**
+     * Connection pool settings. Reactor Netty keeps one pool per remote address,
+     * so the limits apply to each service instance.
+     */
+    @Data
+    public static class Pool {
+
+        private int maxConnections = 50;
+
+        /**
+         * Requests allowed to wait for a connection once the pool is exhausted, -1 for no limit.
+         */
+        private int pendingAcquireMaxCount = 200;
+
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(2);
+
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+
+        /**
+         * How often idle connections, and the pools of instances that have gone away, are evicted.
+         */
+        private Duration evictionInterval = Duration.ofSeconds(30);
+    }
+
+    /**
+     * HTTP/2 cleartext transport, using prior knowledge. Requests to one instance are multiplexed
+     * over a few connections instead of one connection per concurrent call.
+     * The backend services must run with the {@code h2c} profile.
+     */
+    @Data
+    public static class H2c {
+
+        private boolean enabled = false;
+
+        /**
+         * HTTP/2 connections opened to each service instance.
+         */
+        private int maxConnections = 2;
+
+        private long maxConcurrentStreams = 100;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.samples.petclinic.api.application.ConcurrencyLimitExceededException;
+import org.springframework.samples.petclinic.api.application.ConcurrencyLimitProperties;
+import org.springframework.samples.petclinic.api.application.ConcurrencyLimiters;
+import org.springframework.samples.petclinic.api.application.Deadline;
+import org.springframework.samples.petclinic.api.application.HedgingProperties;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.Http2AllocationStrategy;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * HTTP client shared by the {@link WebClient WebClients} calling the backend services.
+ * Pool metrics are published under {@code reactor.netty.connection.provider.*}.
+ */
+@Configuration
+@EnableConfigurationProperties({ServiceClientProperties.class, HedgingProperties.class, ConcurrencyLimitProperties.class})
+@LoadBalancerClients(defaultConfiguration = HedgingLoadBalancerConfiguration.class)
+public class WebClientConfig {
+
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider serviceConnectionProvider(ServiceClientProperties properties) {
+        final ServiceClientProperties.Pool pool = properties.getPool();
+        final ConnectionProvider.Builder builder = ConnectionProvider.builder("petclinic-services")
+            .maxConnections(pool.getMaxConnections())
+            .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+            .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+            .maxIdleTime(pool.getMaxIdleTime())
+            .maxLifeTime(pool.getMaxLifeTime())
+            .evictInBackground(pool.getEvictionInterval())
+            .disposeInactivePoolsInBackground(pool.getEvictionInterval(), pool.getMaxIdleTime())
+            .metrics(true);
+        final ServiceClientProperties.H2c h2c = properties.getH2c();
+        if (h2c.isEnabled()) {
+            builder.allocationStrategy(Http2AllocationStrategy.builder()
+                .maxConnections(h2c.getMaxConnections())
+                .maxConcurrentStreams(h2c.getMaxConcurrentStreams())
+                .build());
+        }
+        return builder.build();
+    }
+
+    @Bean
+    @LoadBalanced
+    public WebClient.Builder loadBalancedWebClientBuilder(ConnectionProvider serviceConnectionProvider,
+                                                          ServiceClientProperties properties,
+                                                          ConcurrencyLimiters concurrencyLimiters) {
+        final HttpClient httpClient = HttpClient.create(serviceConnectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+            .keepAlive(properties.isKeepAlive())
+            .responseTimeout(properties.getResponseTimeout())
+            .protocol(properties.getH2c().isEnabled() ? HttpProtocol.H2C : HttpProtocol.HTTP11);
+        return WebClient.builder()
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .filter(deadlinePropagation())
+            .filter(concurrencyLimit(concurrencyLimiters));
+    }
+
+    /**
+     * Sends the remaining {@link Deadline} budget of the current request, if any, along with each call.
+     */
+    static ExchangeFilterFunction deadlinePropagation() {
+        return (request, next) -> Mono.deferContextual(context -> Deadline.from(context)
+            .map(deadline -> next.exchange(ClientRequest.from(request)
+                .header(Deadline.HEADER, Long.toString(deadline.remaining().toMillis()))
+                .build()))
+            .orElseGet(() -> next.exchange(request)));
+    }
+
+    /**
+     * Sheds calls beyond the adaptive concurrency limit of the called service, keyed by the service id
+     * of the load balanced URL, with a {@link ConcurrencyLimitExceededException}.
+     */
+    static ExchangeFilterFunction concurrencyLimit(ConcurrencyLimiters limiters) {
+        return (request, next) -> {
+            if (!limiters.isEnabled()) {
+                return next.exchange(request);
+            }
+            final String serviceId = request.url().getHost();
+            return limiters.client(serviceId).tryAcquire()
+                .map(permit -> next.exchange(request)
+                    .doOnSuccess(response -> permit.complete(response != null ? response.statusCode() : null))
+                    .doOnError(ex -> permit.dropped())
+                    .doOnCancel(permit::ignore))
+                .orElseGet(() -> Mono.error(new ConcurrencyLimitExceededException(serviceId, limiters.retryAfterSeconds())));
+        };
+    }
+
+    /**
+     * Switches the {@code spring.cloud.gateway.routes} proxies to h2c as well.
+     */
+    @Bean
+    @ConditionalOnProperty("petclinic.gateway.client.h2c.enabled")
+    HttpClientCustomizer h2cRoutesHttpClientCustomizer() {
+        return httpClient -> httpClient.protocol(HttpProtocol.H2C);
+    }
+}
@@ -16,6 +16,7 @@
 package org.springframework.samples.petclinic.api.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.util.ArrayList;
@@ -43,10 +44,32 @@ public class OwnerDetails {
 
     private final List<PetDetails> pets = new ArrayList<>();
 
+    /**
+     * Sections of the response left empty because their backend did not answer in time.
+     */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private final List<String> degraded = new ArrayList<>();
+
     @JsonIgnore
     public List<Integer> getPetIds() {
         return pets.stream()
             .map(PetDetails::getId)
             .collect(toList());
     }
+
+    /**
+     * @return a copy whose pets can be completed without affecting this instance
+     */
+    public OwnerDetails copy() {
+        final OwnerDetails copy = new OwnerDetails();
+        copy.setId(id);
+        copy.setFirstName(firstName);
+        copy.setLastName(lastName);
+        copy.setAddress(address);
+        copy.setCity(city);
+        copy.setTelephone(telephone);
+        pets.forEach(pet -> copy.getPets().add(pet.copy()));
+        copy.getDegraded().addAll(degraded);
+        return copy;
+    }
 }
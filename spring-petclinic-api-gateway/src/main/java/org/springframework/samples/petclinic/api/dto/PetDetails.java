@@ -15,6 +15,7 @@
  */
 package org.springframework.samples.petclinic.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 import java.util.ArrayList;
@@ -36,4 +37,25 @@ public class PetDetails {
 
     private final List<VisitDetails> visits = new ArrayList<>();
 
+    /**
+     * Set instead of {@link #visits} when the owner details are requested with visit summaries.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long visitCount;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String lastVisitDate;
+
+    public PetDetails copy() {
+        final PetDetails copy = new PetDetails();
+        copy.setId(id);
+        copy.setName(name);
+        copy.setBirthDate(birthDate);
+        copy.setType(type);
+        copy.getVisits().addAll(visits);
+        copy.setVisitCount(visitCount);
+        copy.setLastVisitDate(lastVisitDate);
+        return copy;
+    }
+
 }
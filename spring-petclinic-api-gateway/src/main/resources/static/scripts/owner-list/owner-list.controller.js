@@ -3,8 +3,29 @@
 angular.module('ownerList')
     .controller('OwnerListController', ['$http', function ($http) {
         var self = this;
+        // Only the answers to the latest search are shown, debounced searches may complete out of order
+        var lastSearch = 0;
 
-        $http.get('api/customer/owners').then(function (resp) {
-            self.owners = resp.data;
-        });
+        self.search = function () {
+            var search = ++lastSearch;
+            var query = self.query ? '?lastName=' + encodeURIComponent(self.query) : '';
+            $http.get('api/customer/owners' + query).then(function (resp) {
+                if (search === lastSearch) {
+                    self.owners = resp.data;
+                }
+            });
+            if (!self.query) {
+                self.lastNames = [];
+                return;
+            }
+            $http.get('api/customer/owners/names' + query).then(function (resp) {
+                if (search === lastSearch) {
+                    self.lastNames = resp.data
+                        .map(function (name) { return name.lastName; })
+                        .filter(function (lastName, index, lastNames) { return lastNames.indexOf(lastName) === index; });
+                }
+            });
+        };
+
+        self.search();
     }]);
@@ -0,0 +1,96 @@
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GradientLimiterTest {
+
+    private MeterRegistry meterRegistry;
+
+    private ConcurrencyLimitProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new ConcurrencyLimitProperties();
+        properties.setInitialLimit(10);
+        properties.setMinLimit(2);
+        properties.setMaxLimit(100);
+    }
+
+    @Test
+    void callsOverTheLimitAreRejected() {
+        final GradientLimiter limiter = new GradientLimiter("route", "test", properties, meterRegistry);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire().isPresent());
+        }
+
+        assertEquals(Optional.empty(), limiter.tryAcquire());
+        assertEquals(1.0, meterRegistry.get("petclinic.gateway.concurrency.rejected").counter().count());
+        assertEquals(10.0, meterRegistry.get("petclinic.gateway.concurrency.inflight").gauge().value());
+    }
+
+    @Test
+    void completedPermitFreesASlotOnce() {
+        final GradientLimiter limiter = new GradientLimiter("route", "test", properties, meterRegistry);
+        for (int i = 0; i < 9; i++) {
+            limiter.tryAcquire();
+        }
+        final GradientLimiter.Permit permit = limiter.tryAcquire().orElseThrow();
+
+        permit.ignore();
+        permit.ignore();
+
+        assertTrue(limiter.tryAcquire().isPresent());
+        assertEquals(Optional.empty(), limiter.tryAcquire());
+    }
+
+    @Test
+    void limitGrowsWhileLatencyIsSteady() {
+        final GradientLimiter limiter = new GradientLimiter("route", "test", properties, meterRegistry);
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(10_000_000, limiter.getLimit());
+        }
+
+        assertTrue(limiter.getLimit() > 10, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void limitShrinksWhenLatencyRises() {
+        final GradientLimiter limiter = new GradientLimiter("route", "test", properties, meterRegistry);
+        limiter.onSample(10_000_000, 10);
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(100_000_000, limiter.getLimit());
+        }
+
+        assertTrue(limiter.getLimit() < 6, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void limitIsNotRaisedByAnIdleBackend() {
+        final GradientLimiter limiter = new GradientLimiter("route", "test", properties, meterRegistry);
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(10_000_000, 1);
+        }
+
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void overloadAnswersBackOff() {
+        final GradientLimiter limiter = new GradientLimiter("route", "test", properties, meterRegistry);
+
+        limiter.tryAcquire().orElseThrow().complete(HttpStatus.SERVICE_UNAVAILABLE);
+
+        assertEquals(9, limiter.getLimit());
+        assertEquals(9.0, meterRegistry.get("petclinic.gateway.concurrency.limit").gauge().value());
+    }
+}
@@ -0,0 +1,172 @@
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgerTest {
+
+    private MeterRegistry meterRegistry;
+
+    private HedgingProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new HedgingProperties();
+        properties.setEnabled(true);
+        properties.setMaxDelay(Duration.ofMillis(50));
+    }
+
+    @Test
+    void slowCallIsHedgedAndFirstAnswerWins() {
+        properties.setBudgetRatio(1.0);
+        final Hedger hedger = new Hedger("test", properties, meterRegistry);
+        final AtomicInteger calls = new AtomicInteger();
+
+        final String result = hedger.execute(hedgedCall -> calls.incrementAndGet() == 1
+                ? Mono.just("slow").delayElement(Duration.ofSeconds(5))
+                : Mono.just("hedge"))
+            .block(Duration.ofSeconds(2));
+
+        assertEquals("hedge", result);
+        assertEquals(2, calls.get());
+        assertEquals(1.0, count("hedged"));
+        assertEquals(1.0, count("won"));
+    }
+
+    @Test
+    void noHedgeIsSentOnceTheBudgetIsSpent() {
+        properties.setBudgetRatio(0.1);
+        final Hedger hedger = new Hedger("test", properties, meterRegistry);
+        final AtomicInteger calls = new AtomicInteger();
+
+        final String result = hedger.execute(hedgedCall -> {
+                calls.incrementAndGet();
+                return Mono.just("slow").delayElement(Duration.ofMillis(100));
+            })
+            .block(Duration.ofSeconds(2));
+
+        assertEquals("slow", result);
+        assertEquals(1, calls.get());
+        assertEquals(0.0, count("hedged"));
+        assertEquals(1.0, count("budget_exhausted"));
+    }
+
+    @Test
+    void clientErrorOfTheFirstCallIsReturnedWithoutWaitingForTheHedge() {
+        properties.setBudgetRatio(1.0);
+        properties.setMaxDelay(Duration.ofSeconds(5));
+        final Hedger hedger = new Hedger("test", properties, meterRegistry);
+        final AtomicInteger calls = new AtomicInteger();
+        final WebClientResponseException notFound = WebClientResponseException.create(404, "Not Found", null, null, null);
+
+        final WebClientResponseException thrown = assertThrows(WebClientResponseException.class, () -> hedger
+            .execute(hedgedCall -> {
+                calls.incrementAndGet();
+                return Mono.<String>error(notFound);
+            })
+            .block(Duration.ofSeconds(2)));
+
+        assertSame(notFound, thrown);
+        assertEquals(1, calls.get());
+        assertEquals(0.0, count("hedged"));
+    }
+
+    @Test
+    void serverErrorOfTheFirstCallLetsTheHedgeAnswer() {
+        properties.setBudgetRatio(1.0);
+        final Hedger hedger = new Hedger("test", properties, meterRegistry);
+        final AtomicInteger calls = new AtomicInteger();
+
+        final String result = hedger.execute(hedgedCall -> calls.incrementAndGet() == 1
+                ? Mono.error(WebClientResponseException.create(503, "Service Unavailable", null, null, null))
+                : Mono.just("hedge"))
+            .block(Duration.ofSeconds(2));
+
+        assertEquals("hedge", result);
+        assertEquals(1.0, count("hedged"));
+    }
+
+    @Test
+    void serverErrorOfTheFirstCallSendsTheHedgeWithoutWaitingForTheDelay() {
+        properties.setBudgetRatio(1.0);
+        properties.setMaxDelay(Duration.ofSeconds(5));
+        final Hedger hedger = new Hedger("test", properties, meterRegistry);
+        final AtomicInteger calls = new AtomicInteger();
+
+        final String result = hedger.execute(hedgedCall -> calls.incrementAndGet() == 1
+                ? Mono.error(WebClientResponseException.create(503, "Service Unavailable", null, null, null))
+                : Mono.just("hedge"))
+            .block(Duration.ofSeconds(2));
+
+        assertEquals("hedge", result);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void serverErrorOfTheFirstCallIsReturnedAtOnceWhenTheBudgetIsSpent() {
+        properties.setBudgetRatio(0.1);
+        properties.setMaxDelay(Duration.ofSeconds(5));
+        final Hedger hedger = new Hedger("test", properties, meterRegistry);
+        final WebClientResponseException unavailable = WebClientResponseException.create(503, "Service Unavailable", null, null, null);
+
+        final WebClientResponseException thrown = assertThrows(WebClientResponseException.class, () -> hedger
+            .execute(hedgedCall -> Mono.<String>error(unavailable))
+            .block(Duration.ofSeconds(2)));
+
+        assertSame(unavailable, thrown);
+        assertEquals(0.0, count("hedged"));
+        assertEquals(1.0, count("budget_exhausted"));
+    }
+
+    @Test
+    void firstCallAndHedgeShareTheirHedgedCall() {
+        properties.setBudgetRatio(1.0);
+        final Hedger hedger = new Hedger("test", properties, meterRegistry);
+        final AtomicInteger calls = new AtomicInteger();
+        final HedgedCall[] hedgedCalls = new HedgedCall[2];
+
+        hedger.execute(hedgedCall -> {
+                final int call = calls.getAndIncrement();
+                hedgedCalls[call] = hedgedCall;
+                return call == 0 ? Mono.just("slow").delayElement(Duration.ofSeconds(5)) : Mono.just("hedge");
+            })
+            .block(Duration.ofSeconds(2));
+
+        assertEquals(2, calls.get());
+        assertSame(hedgedCalls[0], hedgedCalls[1]);
+    }
+
+    @Test
+    void onlyServerAndConnectionFailuresAreRetryable() {
+        assertTrue(Hedger.isRetryable(WebClientResponseException.create(502, "Bad Gateway", null, null, null)));
+        assertFalse(Hedger.isRetryable(WebClientResponseException.create(400, "Bad Request", null, null, null)));
+        assertFalse(Hedger.isRetryable(new ConcurrencyLimitExceededException("visits-service", 1)));
+    }
+
+    @Test
+    void callsAreNotHedgedWhenDisabled() {
+        properties.setEnabled(false);
+        final Hedger hedger = new Hedger("test", properties, meterRegistry);
+
+        assertEquals("value", hedger.execute(hedgedCall -> Mono.just("value")).block());
+        assertEquals(0.0, count("call"));
+    }
+
+    private double count(String event) {
+        return meterRegistry.get("petclinic.gateway.hedge").tag("event", event).counter().count();
+    }
+}
@@ -0,0 +1,73 @@
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SingleFlightTest {
+
+    private MeterRegistry meterRegistry;
+
+    private SingleFlight<Integer, String> singleFlight;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight<>("test", meterRegistry);
+    }
+
+    @Test
+    void concurrentCallsForSameKeyShareOneDownstreamCall() {
+        Sinks.One<String> downstream = Sinks.one();
+        AtomicInteger calls = new AtomicInteger();
+        AtomicReference<String> first = new AtomicReference<>();
+        AtomicReference<String> second = new AtomicReference<>();
+
+        singleFlight.execute(1, () -> {
+            calls.incrementAndGet();
+            return downstream.asMono();
+        }).subscribe(first::set);
+        singleFlight.execute(1, () -> {
+            calls.incrementAndGet();
+            return downstream.asMono();
+        }).subscribe(second::set);
+
+        assertEquals(1, inFlight());
+        downstream.tryEmitValue("George");
+
+        assertEquals(1, calls.get());
+        assertEquals("George", first.get());
+        assertEquals("George", second.get());
+        assertEquals(1.0, count("executed"));
+        assertEquals(1.0, count("coalesced"));
+        assertEquals(0, inFlight());
+    }
+
+    @Test
+    void completedCallIsNotReused() {
+        AtomicInteger calls = new AtomicInteger();
+
+        singleFlight.execute(1, () -> Mono.just("call-" + calls.incrementAndGet())).block();
+        String result = singleFlight.execute(1, () -> Mono.just("call-" + calls.incrementAndGet())).block();
+
+        assertEquals("call-2", result);
+        assertEquals(2.0, count("executed"));
+        assertEquals(0.0, count("coalesced"));
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("petclinic.gateway.singleflight").tag("result", result).counter().count();
+    }
+
+    private int inFlight() {
+        return (int) meterRegistry.get("petclinic.gateway.singleflight.inflight").gauge().value();
+    }
+}
@@ -1,5 +1,6 @@
 package org.springframework.samples.petclinic.api.application;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.jupiter.api.AfterEach;
@@ -27,7 +28,7 @@ class VisitsServiceClientIntegrationTest {
     @BeforeEach
     void setUp() {
         server = new MockWebServer();
-        visitsServiceClient = new VisitsServiceClient(WebClient.builder());
+        visitsServiceClient = new VisitsServiceClient(WebClient.builder(), new SimpleMeterRegistry(), new HedgingProperties());
         visitsServiceClient.setHostname(server.url("/").toString());
     }
 
@@ -0,0 +1,100 @@
+package org.springframework.samples.petclinic.api.boundary.web;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.samples.petclinic.api.dto.OwnerDetails;
+import org.springframework.samples.petclinic.api.dto.PetDetails;
+import org.springframework.samples.petclinic.api.dto.VisitDetails;
+import org.springframework.samples.petclinic.api.dto.Visits;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the former per-pet filtering of {@link Visits#getItems()} with the single-pass grouping
+ * done by {@link ApiGatewayController#addVisitsToOwners}.
+ * <p>
+ * Not run by Surefire. Launch it from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.springframework.samples.petclinic.api.boundary.web.AddVisitsToOwnerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddVisitsToOwnerBenchmark {
+
+    @Param({"5", "50", "300"})
+    private int pets;
+
+    @Param({"10", "20"})
+    private int visitsPerPet;
+
+    private OwnerDetails owner;
+
+    private Visits visits;
+
+    @Setup
+    public void setUp() {
+        owner = new OwnerDetails();
+        for (int i = 0; i < pets; i++) {
+            PetDetails pet = new PetDetails();
+            pet.setId(i + 1);
+            owner.getPets().add(pet);
+        }
+        visits = new Visits();
+        Random random = new Random(42);
+        for (int i = 0; i < pets * visitsPerPet; i++) {
+            VisitDetails visit = new VisitDetails();
+            visit.setId(i);
+            visit.setPetId(random.nextInt(pets) + 1);
+            visits.getItems().add(visit);
+        }
+    }
+
+    @Benchmark
+    public OwnerDetails filterPerPet() {
+        resetVisits();
+        owner.getPets()
+            .forEach(pet -> pet.getVisits()
+                .addAll(visits.getItems().stream()
+                    .filter(v -> v.getPetId() == pet.getId())
+                    .collect(Collectors.toList()))
+            );
+        return owner;
+    }
+
+    @Benchmark
+    public OwnerDetails groupByPetId() {
+        resetVisits();
+        ApiGatewayController.addVisitsToOwners(Collections.singletonList(owner), visits);
+        return owner;
+    }
+
+    private void resetVisits() {
+        owner.getPets().forEach(pet -> pet.getVisits().clear());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(AddVisitsToOwnerBenchmark.class.getSimpleName())
+            .build())
+            .run();
+    }
+}
@@ -1,5 +1,7 @@
 package org.springframework.samples.petclinic.api.boundary.web;
 
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
@@ -8,19 +10,30 @@ import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JAutoConfiguration;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.api.application.ConcurrencyLimitExceededException;
 import org.springframework.samples.petclinic.api.application.CustomersServiceClient;
+import org.springframework.samples.petclinic.api.application.Deadline;
 import org.springframework.samples.petclinic.api.application.VisitsServiceClient;
 import org.springframework.samples.petclinic.api.dto.OwnerDetails;
 import org.springframework.samples.petclinic.api.dto.PetDetails;
 import org.springframework.samples.petclinic.api.dto.VisitDetails;
+import org.springframework.samples.petclinic.api.dto.VisitSummaries;
+import org.springframework.samples.petclinic.api.dto.VisitSummary;
 import org.springframework.samples.petclinic.api.dto.Visits;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.ConnectException;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 @ExtendWith(SpringExtension.class)
 @WebFluxTest(controllers = ApiGatewayController.class)
 @Import({ReactiveResilience4JAutoConfiguration.class, CircuitBreakerConfiguration.class})
@@ -35,6 +48,9 @@ class ApiGatewayControllerTest {
     @Autowired
     private WebTestClient client;
 
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
 
     @Test
     void getOwnerDetails_withAvailableVisitsService() {
@@ -93,7 +109,176 @@ class ApiGatewayControllerTest {
             .expectStatus().isOk()
             .expectBody()
             .jsonPath("$.pets[0].name").isEqualTo("Garfield")
-            .jsonPath("$.pets[0].visits").isEmpty();
+            .jsonPath("$.pets[0].visits").isEmpty()
+            .jsonPath("$.degraded[0]").isEqualTo("visits");
+    }
+
+    @Test
+    void getOwnerDetails_withCustomersServiceAtItsConcurrencyLimit() {
+        Mockito
+            .when(customersServiceClient.getOwner(1))
+            .thenReturn(Mono.error(new ConcurrencyLimitExceededException("customers-service", 2)));
+
+        client.get()
+            .uri("/api/gateway/owners/1")
+            .exchange()
+            .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+            .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "2");
+    }
+
+    @Test
+    void getOwnerDetails_withVisitsServiceExceedingBudget() {
+        OwnerDetails owner = new OwnerDetails();
+        PetDetails cat = new PetDetails();
+        cat.setId(20);
+        cat.setName("Garfield");
+        owner.getPets().add(cat);
+        Mockito
+            .when(customersServiceClient.getOwner(1))
+            .thenReturn(Mono.just(owner));
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(Collections.singletonList(cat.getId())))
+            .thenReturn(Mono.never());
+        final CircuitBreaker.Metrics metrics = circuitBreakerRegistry.circuitBreaker("getOwnerDetails").getMetrics();
+        final int failedCalls = metrics.getNumberOfFailedCalls();
+
+        client.get()
+            .uri("/api/gateway/owners/1")
+            .header(Deadline.HEADER, "200")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.pets[0].name").isEqualTo("Garfield")
+            .jsonPath("$.pets[0].visits").isEmpty()
+            .jsonPath("$.degraded[0]").isEqualTo("visits");
+
+        // The budget of the caller ran out, not visits-service
+        assertEquals(failedCalls, metrics.getNumberOfFailedCalls());
     }
 
+    @Test
+    void getOwnerDetails_withBudgetBelowTheMinimum() {
+        OwnerDetails owner = new OwnerDetails();
+        PetDetails cat = new PetDetails();
+        cat.setId(20);
+        cat.setName("Garfield");
+        owner.getPets().add(cat);
+        Mockito
+            .when(customersServiceClient.getOwner(1))
+            .thenReturn(Mono.just(owner));
+        Visits visits = new Visits();
+        VisitDetails visit = new VisitDetails();
+        visit.setId(300);
+        visit.setDescription("First visit");
+        visit.setPetId(cat.getId());
+        visits.getItems().add(visit);
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(Collections.singletonList(cat.getId())))
+            .thenReturn(Mono.just(visits).delayElement(Duration.ofMillis(20)));
+
+        client.get()
+            .uri("/api/gateway/owners/1")
+            .header(Deadline.HEADER, "0")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.pets[0].visits[0].description").isEqualTo("First visit")
+            .jsonPath("$.degraded").doesNotExist();
+    }
+
+    @Test
+    void getOwnerDetails_withCustomersServiceExceedingBudget() {
+        Mockito
+            .when(customersServiceClient.getOwner(1))
+            .thenReturn(Mono.never());
+
+        client.get()
+            .uri("/api/gateway/owners/1")
+            .header(Deadline.HEADER, "200")
+            .exchange()
+            .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+    }
+
+    @Test
+    void getOwnersDetails_withSingleVisitsCall() {
+        OwnerDetails george = new OwnerDetails();
+        george.setId(1);
+        PetDetails cat = new PetDetails();
+        cat.setId(20);
+        cat.setName("Garfield");
+        george.getPets().add(cat);
+
+        OwnerDetails betty = new OwnerDetails();
+        betty.setId(2);
+        PetDetails dog = new PetDetails();
+        dog.setId(21);
+        dog.setName("Odie");
+        betty.getPets().add(dog);
+
+        Mockito
+            .when(customersServiceClient.getOwners(Arrays.asList(1, 2)))
+            .thenReturn(Flux.just(george, betty));
+
+        Visits visits = new Visits();
+        VisitDetails catVisit = new VisitDetails();
+        catVisit.setId(300);
+        catVisit.setDescription("Cat visit");
+        catVisit.setPetId(cat.getId());
+        visits.getItems().add(catVisit);
+        VisitDetails dogVisit = new VisitDetails();
+        dogVisit.setId(301);
+        dogVisit.setDescription("Dog visit");
+        dogVisit.setPetId(dog.getId());
+        visits.getItems().add(dogVisit);
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(Arrays.asList(cat.getId(), dog.getId())))
+            .thenReturn(Mono.just(visits));
+
+        client.get()
+            .uri("/api/gateway/owners?ids=1,2")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$[0].pets[0].visits[0].description").isEqualTo("Cat visit")
+            .jsonPath("$[1].pets[0].visits[0].description").isEqualTo("Dog visit");
+
+        Mockito.verify(visitsServiceClient, Mockito.times(1)).getVisitsForPets(Mockito.anyList());
+    }
+
+    @Test
+    void getOwnerDetails_withVisitSummaries() {
+        OwnerDetails owner = new OwnerDetails();
+        PetDetails cat = new PetDetails();
+        cat.setId(20);
+        cat.setName("Garfield");
+        PetDetails dog = new PetDetails();
+        dog.setId(21);
+        dog.setName("Odie");
+        owner.getPets().addAll(Arrays.asList(cat, dog));
+        Mockito
+            .when(customersServiceClient.getOwner(1))
+            .thenReturn(Mono.just(owner));
+
+        VisitSummaries summaries = new VisitSummaries();
+        VisitSummary summary = new VisitSummary();
+        summary.setPetId(20);
+        summary.setCount(3);
+        summary.setLastVisitDate("2013-01-04");
+        summaries.getItems().add(summary);
+        Mockito
+            .when(visitsServiceClient.getVisitSummariesForPets(Arrays.asList(20, 21)))
+            .thenReturn(Mono.just(summaries));
+
+        client.get()
+            .uri("/api/gateway/owners/1?visitSummary=true")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.pets[0].visitCount").isEqualTo(3)
+            .jsonPath("$.pets[0].lastVisitDate").isEqualTo("2013-01-04")
+            .jsonPath("$.pets[0].visits").isEmpty()
+            .jsonPath("$.pets[1].visitCount").isEqualTo(0);
+
+        Mockito.verify(visitsServiceClient, Mockito.never()).getVisitsForPets(Mockito.anyList());
+    }
 }
@@ -0,0 +1,190 @@
+package org.springframework.samples.petclinic.api.boundary.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+class ResponseCacheFilterTest {
+
+    private static final String VETS = "[{\"id\":1,\"firstName\":\"James\",\"lastName\":\"Carter\",\"specialties\":[]}]";
+
+    private static final String UPDATED_VETS = "[{\"id\":1,\"firstName\":\"James\",\"lastName\":\"Carter\",\"specialties\":[]},"
+        + "{\"id\":2,\"firstName\":\"Helen\",\"lastName\":\"Leary\",\"specialties\":[]}]";
+
+    private ResponseCacheFilter filter;
+
+    private MockWebServer server;
+
+    private final AtomicInteger routed = new AtomicInteger();
+
+    /**
+     * Stands for the vets service, which always answers with {@code Vary: Accept-Encoding}.
+     */
+    private final GatewayFilterChain vetsService = exchange -> {
+        routed.incrementAndGet();
+        final ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.OK);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(VETS.getBytes(StandardCharsets.UTF_8))));
+    };
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        // The rules of the application configuration, without its profile specific documents
+        final List<PropertySource<?>> sources = new YamlPropertySourceLoader()
+            .load("application", new ClassPathResource("application.yml"));
+        final ResponseCacheProperties properties = new Binder(ConfigurationPropertySources.from(sources.get(0)))
+            .bind("petclinic.gateway.response-cache", ResponseCacheProperties.class)
+            .get();
+        filter = new ResponseCacheFilter(properties, new SimpleMeterRegistry(), WebClient.builder());
+    }
+
+    @AfterEach
+    void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void vetsVaryingOnAcceptEncodingAreCached() {
+        final MockServerWebExchange first = get("gzip");
+        filter.filter(first, vetsService).block();
+        final MockServerWebExchange second = get("gzip");
+        filter.filter(second, vetsService).block();
+
+        assertEquals(1, routed.get());
+        assertEquals("MISS", first.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_HEADER));
+        assertEquals("HIT", second.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_HEADER));
+        assertEquals(VETS, second.getResponse().getBodyAsString().block());
+        assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), second.getResponse().getHeaders().getVary());
+    }
+
+    @Test
+    void vetsAreCachedPerAcceptEncoding() {
+        filter.filter(get("gzip"), vetsService).block();
+        final MockServerWebExchange identity = get("identity");
+        filter.filter(identity, vetsService).block();
+
+        assertEquals(2, routed.get());
+        assertEquals("MISS", identity.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_HEADER));
+    }
+
+    @Test
+    void vetsLargerThanTheMaxEntrySizeAreWrittenThroughUncached() {
+        final ResponseCacheProperties.Rule rule = new ResponseCacheProperties.Rule();
+        rule.setName("vets");
+        rule.setPath("/api/vet/vets");
+        rule.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        final ResponseCacheProperties properties = new ResponseCacheProperties();
+        properties.setMaxEntrySize(DataSize.ofBytes(UPDATED_VETS.length() / 2));
+        properties.setRules(List.of(rule));
+        filter = new ResponseCacheFilter(properties, new SimpleMeterRegistry(), WebClient.builder());
+        // Without a Content-Length, in two buffers of which only the first one fits in the max entry size
+        final GatewayFilterChain chunkedVetsService = exchange -> {
+            routed.incrementAndGet();
+            final ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.OK);
+            final int split = VETS.length() - 1;
+            return response.writeWith(Flux.just(UPDATED_VETS.substring(0, split), UPDATED_VETS.substring(split))
+                .map(chunk -> response.bufferFactory().wrap(chunk.getBytes(StandardCharsets.UTF_8))));
+        };
+
+        final MockServerWebExchange first = get("gzip");
+        filter.filter(first, chunkedVetsService).block();
+        final MockServerWebExchange second = get("gzip");
+        filter.filter(second, chunkedVetsService).block();
+
+        assertEquals(2, routed.get());
+        assertEquals("MISS", second.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_HEADER));
+        assertEquals(UPDATED_VETS, first.getResponse().getBodyAsString().block());
+        assertEquals(UPDATED_VETS, second.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void staleVetsAreRevalidatedWithARequestOfTheirOwn() throws InterruptedException {
+        final ResponseCacheProperties.Rule rule = new ResponseCacheProperties.Rule();
+        rule.setName("vets");
+        rule.setPath("/api/vet/vets");
+        rule.setTtl(Duration.ofMillis(200));
+        rule.setStaleWhileRevalidate(Duration.ofMinutes(1));
+        rule.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        final ResponseCacheProperties properties = new ResponseCacheProperties();
+        properties.setRules(List.of(rule));
+        filter = new ResponseCacheFilter(properties, new SimpleMeterRegistry(), WebClient.builder());
+        server.enqueue(new MockResponse()
+            .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+            .setBody(UPDATED_VETS));
+        // As the route filters do once the request is routed to the vets service
+        final GatewayFilterChain routedToServer = exchange -> {
+            exchange.getAttributes().put(GATEWAY_ROUTE_ATTR, Route.async().id("vets-service")
+                .uri(server.url("/").uri()).predicate(route -> true).build());
+            exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, server.url("/vets").uri());
+            return vetsService.filter(exchange);
+        };
+        filter.filter(get("gzip"), routedToServer).block();
+        Thread.sleep(300);
+
+        final MockServerWebExchange stale = get("gzip");
+        filter.filter(stale, routedToServer).block();
+
+        assertEquals("STALE", stale.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_HEADER));
+        assertEquals(VETS, stale.getResponse().getBodyAsString().block());
+        final RecordedRequest revalidation = server.takeRequest(2, TimeUnit.SECONDS);
+        assertNotNull(revalidation);
+        assertEquals("/vets", revalidation.getPath());
+        assertEquals("gzip", revalidation.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        assertEquals(1, routed.get());
+
+        MockServerWebExchange hit;
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        do {
+            Thread.sleep(10);
+            hit = get("gzip");
+            filter.filter(hit, routedToServer).block();
+        } while (!"HIT".equals(hit.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_HEADER))
+            && System.nanoTime() < deadline);
+        assertEquals("HIT", hit.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_HEADER));
+        assertEquals(UPDATED_VETS, hit.getResponse().getBodyAsString().block());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    private static MockServerWebExchange get(String acceptEncoding) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/vet/vets")
+            .header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding));
+    }
+}
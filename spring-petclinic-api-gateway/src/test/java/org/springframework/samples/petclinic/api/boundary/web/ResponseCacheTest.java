@@ -0,0 +1,58 @@
+package org.springframework.samples.petclinic.api.boundary.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.samples.petclinic.api.boundary.web.ResponseCache.CachedResponse;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResponseCacheTest {
+
+    private final ResponseCache cache = new ResponseCache(10, new SimpleMeterRegistry());
+
+    @Test
+    void leastRecentlyUsedResponsesAreEvictedBeyondTheMaxSize() {
+        cache.put("a", response("owner", Map.of(), 4), cache.generation("owner"));
+        cache.put("b", response("owner", Map.of(), 4), cache.generation("owner"));
+        cache.get("a");
+
+        cache.put("c", response("owner", Map.of(), 4), cache.generation("owner"));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(8, cache.size());
+    }
+
+    @Test
+    void invalidationOnlyDropsResponsesWithTheSameVariables() {
+        cache.put("owner 1", response("owner", Map.of("ownerId", "1"), 1), cache.generation("owner"));
+        cache.put("owner 2", response("owner", Map.of("ownerId", "2"), 1), cache.generation("owner"));
+        cache.put("vets", response("vets", Map.of(), 1), cache.generation("vets"));
+
+        assertEquals(1, cache.invalidate("owner", Map.of("ownerId", "1")));
+
+        assertNull(cache.get("owner 1"));
+        assertNotNull(cache.get("owner 2"));
+        assertNotNull(cache.get("vets"));
+    }
+
+    @Test
+    void responseFetchedBeforeAnInvalidationIsNotStored() {
+        final long generation = cache.generation("owner");
+        cache.invalidate("owner", Map.of("ownerId", "1"));
+
+        assertFalse(cache.put("owner 1", response("owner", Map.of("ownerId", "1"), 1), generation));
+        assertNull(cache.get("owner 1"));
+    }
+
+    private static CachedResponse response(String rule, Map<String, String> variables, int size) {
+        return new CachedResponse(rule, variables, new HttpHeaders(), new byte[size], null);
+    }
+}
@@ -0,0 +1,113 @@
+package org.springframework.samples.petclinic.api.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.Http2AllocationStrategy;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares HTTP/1.1 and h2c between the gateway and a backend under a fixed concurrency of 64 callers.
+ * The sample-time mode reports the latency percentiles; the number of TCP connections accepted by the
+ * backend is printed when each trial ends.
+ * <p>
+ * Not run by Surefire. Launch it from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.springframework.samples.petclinic.api.config.H2cTransportBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(64)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class H2cTransportBenchmark {
+
+    private static final String VISITS =
+        "{\"items\":[{\"id\":5,\"date\":\"2018-11-15\",\"description\":\"rabies shot\",\"petId\":1}]}";
+
+    @Param({"HTTP11", "H2C"})
+    private HttpProtocol protocol;
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private DisposableServer server;
+
+    private ConnectionProvider connectionProvider;
+
+    private HttpClient client;
+
+    @Setup
+    public void setUp() {
+        server = HttpServer.create()
+            .port(0)
+            .protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+            .doOnChannelInit((observer, channel, remoteAddress) -> connections.incrementAndGet())
+            .route(routes -> routes.get("/pets/visits", (request, response) -> response
+                .header("Content-Type", "application/json")
+                .sendString(Mono.just(VISITS).delayElement(Duration.ofMillis(5)))))
+            .bindNow();
+
+        // Same defaults as ServiceClientProperties
+        final ConnectionProvider.Builder builder = ConnectionProvider.builder("benchmark")
+            .maxConnections(50)
+            .pendingAcquireMaxCount(-1);
+        if (protocol == HttpProtocol.H2C) {
+            builder.allocationStrategy(Http2AllocationStrategy.builder()
+                .maxConnections(2)
+                .maxConcurrentStreams(100)
+                .build());
+        }
+        connectionProvider = builder.build();
+        client = HttpClient.create(connectionProvider)
+            .protocol(protocol)
+            .baseUrl("http://localhost:" + server.port());
+    }
+
+    @Benchmark
+    public String getVisitsForPets() {
+        return client.get()
+            .uri("/pets/visits?petId=1")
+            .responseContent()
+            .aggregate()
+            .asString()
+            .block();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n%s: %d TCP connections accepted by the backend%n", protocol, connections.get());
+        connectionProvider.dispose();
+        server.disposeNow();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(H2cTransportBenchmark.class.getSimpleName())
+            .build())
+            .run();
+    }
+}
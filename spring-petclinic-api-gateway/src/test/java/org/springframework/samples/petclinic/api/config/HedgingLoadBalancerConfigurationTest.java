@@ -0,0 +1,52 @@
+package org.springframework.samples.petclinic.api.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.samples.petclinic.api.application.HedgedCall;
+import org.springframework.util.LinkedMultiValueMap;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HedgingLoadBalancerConfigurationTest {
+
+    private final ServiceInstance first = new DefaultServiceInstance("visits-1", "visits-service", "10.0.0.1", 8082, false);
+
+    private final ServiceInstance second = new DefaultServiceInstance("visits-2", "visits-service", "10.0.0.2", 8082, false);
+
+    private final ServiceInstanceListSupplier supplier = new HedgingLoadBalancerConfiguration.HedgeAwareServiceInstanceListSupplier(
+        ServiceInstanceListSuppliers.from("visits-service", first, second));
+
+    @Test
+    void hedgeIsNotSentToTheInstanceOfTheFirstCall() {
+        final HedgedCall hedgedCall = new HedgedCall();
+        final Request<RequestDataContext> request = request(Map.of(HedgedCall.ATTRIBUTE, hedgedCall));
+
+        new HedgingLoadBalancerConfiguration.HedgedCallLifecycle().onStartRequest(request, new DefaultResponse(first));
+
+        assertEquals(List.of(second), supplier.get(request).blockFirst());
+    }
+
+    @Test
+    void noInstanceIsLeftOutOfOtherCalls() {
+        assertEquals(List.of(first, second), supplier.get(request(Map.of())).blockFirst());
+    }
+
+    private static Request<RequestDataContext> request(Map<String, Object> attributes) {
+        return new DefaultRequest<>(new RequestDataContext(new RequestData(HttpMethod.GET,
+            URI.create("http://visits-service/pets/visits?petId=7"), new HttpHeaders(), new LinkedMultiValueMap<>(), attributes)));
+    }
+}
@@ -0,0 +1,132 @@
+package org.springframework.samples.petclinic.api.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.api.application.ConcurrencyLimitProperties;
+import org.springframework.samples.petclinic.api.application.ConcurrencyLimiters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Builds the service client from {@link ServiceClientProperties} and reads the pool settings back from the
+ * {@code reactor.netty.connection.provider.*} gauges, which are only published when pool metrics are enabled.
+ */
+class WebClientConfigTest {
+
+    private final WebClientConfig config = new WebClientConfig();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ServiceClientProperties properties = new ServiceClientProperties();
+
+    private MockWebServer server;
+
+    private ConnectionProvider connectionProvider;
+
+    @BeforeEach
+    void setUp() {
+        // Reactor Netty publishes its pool metrics to the global registry
+        Metrics.globalRegistry.add(meterRegistry);
+        server = new MockWebServer();
+    }
+
+    @AfterEach
+    void shutdown() throws IOException {
+        if (connectionProvider != null) {
+            connectionProvider.dispose();
+        }
+        Metrics.globalRegistry.remove(meterRegistry);
+        server.shutdown();
+    }
+
+    @Test
+    void poolIsSizedFromTheProperties() {
+        properties.getPool().setMaxConnections(7);
+        properties.getPool().setPendingAcquireMaxCount(11);
+
+        callServer();
+
+        assertEquals(7, connectionProvider.maxConnections());
+        assertEquals(7.0, gauge("max.connections"));
+        assertEquals(11.0, gauge("max.pending.connections"));
+    }
+
+    @Test
+    void idleConnectionsAreEvictedInTheBackground() throws InterruptedException {
+        properties.getPool().setMaxIdleTime(Duration.ofMillis(100));
+        properties.getPool().setEvictionInterval(Duration.ofMillis(50));
+
+        callServer();
+
+        assertTrue(gauge("total.connections") > 0);
+        awaitNoConnection();
+    }
+
+    @Test
+    void connectionsAreClosedAtTheEndOfTheirLifetime() throws InterruptedException {
+        properties.getPool().setMaxIdleTime(Duration.ofMinutes(1));
+        properties.getPool().setMaxLifeTime(Duration.ofMillis(200));
+        properties.getPool().setEvictionInterval(Duration.ofMillis(50));
+
+        callServer();
+
+        assertTrue(gauge("total.connections") > 0);
+        awaitNoConnection();
+    }
+
+    @Test
+    void connectionsAreKeptWithinTheirIdleTimeAndLifetime() throws InterruptedException {
+        properties.getPool().setEvictionInterval(Duration.ofMillis(50));
+
+        callServer();
+        Thread.sleep(500);
+
+        assertTrue(gauge("total.connections") > 0);
+    }
+
+    private void callServer() {
+        final ConcurrencyLimitProperties concurrencyLimit = new ConcurrencyLimitProperties();
+        concurrencyLimit.setEnabled(false);
+        connectionProvider = config.serviceConnectionProvider(properties);
+        final WebClient webClient = config.loadBalancedWebClientBuilder(connectionProvider, properties,
+                new ConcurrencyLimiters(concurrencyLimit, meterRegistry))
+            .build();
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        assertEquals("ok", webClient.get().uri(server.url("/").uri()).retrieve().bodyToMono(String.class).block());
+    }
+
+    private void awaitNoConnection() throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (gauge("total.connections") > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0.0, gauge("total.connections"));
+    }
+
+    /**
+     * @return the value of the given pool gauge for the connections to the mock server
+     */
+    private double gauge(String name) {
+        return meterRegistry.find("reactor.netty.connection.provider." + name)
+            .tag("name", "petclinic-services")
+            .gauges()
+            .stream()
+            .filter(gauge -> gauge.getId().getTag("remote.address").endsWith(":" + server.getPort()))
+            .mapToDouble(Gauge::value)
+            .sum();
+    }
+}
@@ -17,13 +17,20 @@ package org.springframework.samples.petclinic.customers;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.samples.petclinic.customers.config.WarmUpProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * @author Maciej Szarlinski
  */
 @EnableDiscoveryClient
 @SpringBootApplication
+@EnableCaching
+@EnableScheduling
+@EnableConfigurationProperties(WarmUpProperties.class)
 public class CustomersServiceApplication {
 
 	public static void main(String[] args) {
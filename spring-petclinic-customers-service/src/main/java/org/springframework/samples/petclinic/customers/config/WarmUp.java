@@ -0,0 +1,175 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.config;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.customers.model.Owner;
+import org.springframework.samples.petclinic.customers.model.OwnerRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills the owners cache of this instance before it takes traffic, so that a new instance does not send
+ * its first owner reads to the database all at once.
+ * <p>
+ * Once the web server has started, {@code /owners/{ownerId}} is requested from the instance itself for the
+ * first {@code petclinic.warm-up.owners} owners, then each path of {@code petclinic.warm-up.requests}.
+ * Application runners complete before the application is ready, so the readiness state stays
+ * {@code REFUSING_TRAFFIC} until then, and this health indicator reports {@code OUT_OF_SERVICE}. The
+ * instance registers in Eureka with {@code eureka.instance.initial-status: STARTING} and its status is
+ * only set here.
+ * <p>
+ * A failed warm-up leaves the cache cold but the instance able to serve, so by default the failures are
+ * logged and counted and the instance is marked {@code UP} anyway. With
+ * {@code petclinic.warm-up.register-on-failure: false} it stays {@code OUT_OF_SERVICE} instead, in Eureka
+ * and in this health indicator, until it is restarted.
+ * <p>
+ * Each request is timed by {@code petclinic.warmup.request} and the whole warm-up by
+ * {@code petclinic.warmup.duration}.
+ * <p>
+ * vets-service has a smaller copy of the registration and health part, for its single {@code /vets}
+ * request. The services share no library module, and that part is too small to warrant one.
+ */
+@Component
+@Slf4j
+class WarmUp implements ApplicationRunner, HealthIndicator {
+
+    private static final String OWNER_URI = "/owners/{ownerId}";
+
+    private final WarmUpProperties properties;
+
+    private final ApplicationContext context;
+
+    private final OwnerRepository ownerRepository;
+
+    private final RestTemplate restTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ObjectProvider<ApplicationInfoManager> eureka;
+
+    private volatile Status status;
+
+    private volatile long durationNanos;
+
+    private volatile int requests;
+
+    private volatile int failures;
+
+    WarmUp(WarmUpProperties properties, ApplicationContext context, OwnerRepository ownerRepository,
+           RestTemplateBuilder restTemplateBuilder, MeterRegistry meterRegistry, ObjectProvider<ApplicationInfoManager> eureka) {
+        this.properties = properties;
+        this.context = context;
+        this.ownerRepository = ownerRepository;
+        this.restTemplate = restTemplateBuilder.setReadTimeout(properties.getTimeout()).build();
+        this.meterRegistry = meterRegistry;
+        this.eureka = eureka;
+        TimeGauge.builder("petclinic.warmup.duration", this, TimeUnit.NANOSECONDS, warmUp -> warmUp.durationNanos)
+            .description("Time taken by the warm-up requests at startup")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        final long startedAt = System.nanoTime();
+        if (properties.isEnabled() && context instanceof WebServerApplicationContext webContext) {
+            try {
+                warmUp("http://localhost:" + webContext.getWebServer().getPort());
+            } catch (RuntimeException ex) {
+                failures++;
+                log.warn("Warm-up aborted: {}", ex.toString());
+            }
+        }
+        durationNanos = System.nanoTime() - startedAt;
+        register();
+    }
+
+    private void warmUp(String baseUrl) {
+        if (properties.getOwners() > 0) {
+            final List<Owner> owners = ownerRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, properties.getOwners()));
+            for (Owner owner : owners) {
+                request(baseUrl, "/owners/" + owner.getId(), OWNER_URI);
+            }
+        }
+        for (String path : properties.getRequests()) {
+            request(baseUrl, path, path);
+        }
+    }
+
+    private void request(String baseUrl, String path, String uri) {
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome;
+        try {
+            final ResponseEntity<byte[]> response = restTemplate.getForEntity(baseUrl + path, byte[].class);
+            outcome = response.getStatusCode().is2xxSuccessful() ? "SUCCESS" : "FAILURE";
+        } catch (RestClientException ex) {
+            outcome = "FAILURE";
+            log.warn("Warm-up request {} failed: {}", path, ex.getMessage());
+        }
+        requests++;
+        if (!"SUCCESS".equals(outcome)) {
+            failures++;
+        }
+        final long nanos = sample.stop(Timer.builder("petclinic.warmup.request")
+            .description("Warm-up requests sent at startup")
+            .tag("uri", uri)
+            .tag("outcome", outcome)
+            .register(meterRegistry));
+        log.debug("Warm-up {} {} in {} ms", path, outcome, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    private void register() {
+        final boolean register = failures == 0 || properties.isRegisterOnFailure();
+        if (failures > 0) {
+            log.warn("Warm-up failed {} times in {} requests, {}", failures, requests,
+                register ? "marking the instance UP with a cold cache" : "keeping the instance OUT_OF_SERVICE");
+        } else {
+            log.info("Warm-up sent {} requests in {} ms", requests, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        }
+        status = register ? Status.UP : Status.OUT_OF_SERVICE;
+        eureka.ifAvailable(infoManager -> infoManager.setInstanceStatus(register ? InstanceStatus.UP : InstanceStatus.OUT_OF_SERVICE));
+    }
+
+    @Override
+    public Health health() {
+        final Status current = status;
+        return Health.status(current != null ? current : Status.OUT_OF_SERVICE)
+            .withDetail("requests", requests)
+            .withDetail("failures", failures)
+            .withDetail("durationMs", TimeUnit.NANOSECONDS.toMillis(durationNanos))
+            .build();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Requests sent by {@link WarmUp} before the instance takes traffic.
+ */
+@Data
+@ConfigurationProperties(prefix = "petclinic.warm-up")
+public class WarmUpProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Number of owners, in id order, loaded into the owners cache through {@code /owners/{ownerId}}.
+     */
+    private int owners = 100;
+
+    /**
+     * Other paths requested with {@code GET}, in order, relative to the root of this instance.
+     */
+    private List<String> requests = new ArrayList<>();
+
+    /**
+     * Read timeout of each request.
+     */
+    private Duration timeout = Duration.ofSeconds(10);
+
+    /**
+     * Whether the instance is marked {@code UP} in Eureka when warm-up requests failed. Otherwise it stays
+     * {@code OUT_OF_SERVICE} until restarted.
+     */
+    private boolean registerOnFailure = true;
+}
@@ -30,11 +30,15 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotBlank;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.beans.support.MutableSortDefinition;
 import org.springframework.beans.support.PropertyComparator;
 import org.springframework.core.style.ToStringCreator;
@@ -53,8 +57,14 @@ import org.springframework.core.style.ToStringCreator;
 @Table(name = "owners")
 public class Owner {
 
+    /**
+     * Ids are handed out in blocks from the {@code id_generators} table rather than by an identity
+     * column, which would make Hibernate execute every insert on its own and defeat JDBC batching.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "owner_ids")
+    @TableGenerator(name = "owner_ids", table = "id_generators", pkColumnName = "name",
+        valueColumnName = "next_val", pkColumnValue = "owners", allocationSize = 50)
     @Getter
     private Integer id;
 
@@ -89,7 +99,21 @@ public class Owner {
     @Digits(fraction = 0, integer = 12)
     private String telephone;
 
-    @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER, mappedBy = "owner")
+    /**
+     * Incremented by each update, the ETag of the owner is derived from it and the versions of its pets.
+     */
+    @Version
+    @Column(name = "version")
+    @Getter
+    @JsonIgnore
+    private Integer version;
+
+    /**
+     * Lazy by default: detail reads fetch pets through an entity graph of {@link OwnerRepository},
+     * list reads initialise them in batches.
+     */
+    @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY, mappedBy = "owner")
+    @BatchSize(size = 100)
     private Set<Pet> pets;
 
     protected Set<Pet> getPetsInternal() {
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import jakarta.annotation.PostConstruct;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory index of owner last names, sorted case-insensitively, answering prefix searches
+ * without a database round trip.
+ * <p>
+ * Writes going through this instance are applied immediately, and replayed on the snapshot being
+ * rebuilt if a reload is running. Writes made through other instances are picked up by the periodic reload.
+ */
+@Component
+@ConditionalOnProperty(name = "petclinic.owners.name-index.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class OwnerNameIndex {
+
+    private final OwnerRepository ownerRepository;
+
+    private volatile Entries entries = new Entries();
+
+    private final Object reloading = new Object();
+
+    // Names put while a reload reads the database, null when no reload is running. Guarded by this.
+    private List<OwnerName> putDuringReload;
+
+    @PostConstruct
+    void load() {
+        reload();
+    }
+
+    @Scheduled(
+        fixedDelayString = "${petclinic.owners.name-index.reload-interval:PT5M}",
+        initialDelayString = "${petclinic.owners.name-index.reload-interval:PT5M}")
+    public void reload() {
+        synchronized (reloading) {
+            synchronized (this) {
+                putDuringReload = new ArrayList<>();
+            }
+            final Entries loaded = new Entries();
+            try {
+                ownerRepository.findAllNames().forEach(loaded::put);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    putDuringReload = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                // The names read may predate these writes, so they are applied last, in their order
+                putDuringReload.forEach(loaded::put);
+                putDuringReload = null;
+                entries = loaded;
+            }
+            log.info("Indexed {} owner names", loaded.byId.size());
+        }
+    }
+
+    public synchronized void put(Owner owner) {
+        final OwnerName name = new OwnerName(owner.getId(), owner.getFirstName(), owner.getLastName());
+        entries.put(name);
+        if (putDuringReload != null) {
+            putDuringReload.add(name);
+        }
+    }
+
+    /**
+     * @return at most {@code limit} owners whose last name starts with the given prefix, ignoring case,
+     * ordered by last name ignoring case then by id, as the database does
+     */
+    public List<OwnerName> search(String lastNamePrefix, int limit) {
+        final String from = normalize(lastNamePrefix);
+        return entries.byName.subMap(from, true, from + Character.MAX_VALUE, true)
+            .values()
+            .stream()
+            .limit(limit)
+            .toList();
+    }
+
+    private static String normalize(String lastName) {
+        return lastName == null ? "" : lastName.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entries {
+
+        // Keyed by normalized last name then zero-padded id, so that homonyms are kept and ordered by id
+        private final ConcurrentNavigableMap<String, OwnerName> byName = new ConcurrentSkipListMap<>();
+
+        private final ConcurrentMap<Integer, String> byId = new ConcurrentHashMap<>();
+
+        synchronized void put(OwnerName name) {
+            final String key = normalize(name.lastName()) + '\0' + String.format("%010d", name.id());
+            final String previousKey = byId.put(name.id(), key);
+            if (previousKey != null && !previousKey.equals(key)) {
+                byName.remove(previousKey);
+            }
+            byName.put(key, name);
+        }
+    }
+}
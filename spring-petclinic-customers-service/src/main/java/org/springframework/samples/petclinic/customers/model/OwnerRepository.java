@@ -15,7 +15,13 @@
  */
 package org.springframework.samples.petclinic.customers.model;
 
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 /**
  * Repository class for <code>Owner</code> domain objects All method names are compliant with Spring Data naming
@@ -27,4 +33,54 @@ import org.springframework.data.jpa.repository.JpaRepository;
  * @author Michael Isvy
  * @author Maciej Szarlinski
  */
-public interface OwnerRepository extends JpaRepository<Owner, Integer> { }
+public interface OwnerRepository extends JpaRepository<Owner, Integer> {
+
+    /**
+     * Retrieve an {@link Owner} with its pets and their types in a single select.
+     */
+    @Override
+    @EntityGraph(attributePaths = {"pets", "pets.type"})
+    Optional<Owner> findById(Integer id);
+
+    /**
+     * Retrieve several {@link Owner}s with their pets and pet types in a single select.
+     */
+    @Override
+    @EntityGraph(attributePaths = {"pets", "pets.type"})
+    List<Owner> findAllById(Iterable<Integer> ids);
+
+    /**
+     * Retrieve one page of {@link Owner}s without counting the whole table.
+     * Pets are not joined, so that the limit applies in the database; they are loaded in batches.
+     */
+    List<Owner> findAllBy(Pageable pageable);
+
+    /**
+     * Keyset scroll: retrieve the {@link Owner}s following the given id, in id order.
+     * Only the requested page is read, however deep the cursor is.
+     */
+    List<Owner> findByIdGreaterThanOrderByIdAsc(int afterId, Pageable pageable);
+
+    /**
+     * Retrieve the {@link Owner}s whose last name starts with the given prefix, using the last_name index.
+     * The column compares and sorts ignoring case, as {@link OwnerNameIndex} does.
+     */
+    List<Owner> findByLastNameStartingWithOrderByLastNameAscIdAsc(String lastNamePrefix, Pageable pageable);
+
+    /**
+     * Retrieve the names of the {@link Owner}s whose last name starts with the given prefix, ignoring case.
+     */
+    List<OwnerName> findOwnerNamesByLastNameStartingWithOrderByLastNameAscIdAsc(String lastNamePrefix, Pageable pageable);
+
+    /**
+     * Retrieve the names of all {@link Owner}s.
+     */
+    @Query("SELECT new org.springframework.samples.petclinic.customers.model.OwnerName(owner.id, owner.firstName, owner.lastName) FROM Owner owner")
+    List<OwnerName> findAllNames();
+
+    @Query("SELECT new org.springframework.samples.petclinic.customers.model.VersionSummary(count(owner), sum(owner.version)) FROM Owner owner")
+    VersionSummary summarizeVersions();
+
+    @Query("SELECT new org.springframework.samples.petclinic.customers.model.VersionSummary(count(pet), sum(pet.version)) FROM Pet pet")
+    VersionSummary summarizePetVersions();
+}
@@ -25,11 +25,15 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
+import jakarta.persistence.Version;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.springframework.core.style.ToStringCreator;
 
 /**
@@ -46,7 +50,9 @@ import org.springframework.core.style.ToStringCreator;
 @Table(name = "pets")
 public class Pet {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "pet_ids")
+    @TableGenerator(name = "pet_ids", table = "id_generators", pkColumnName = "name",
+        valueColumnName = "next_val", pkColumnValue = "pets", allocationSize = 50)
     private Integer id;
 
     @Column(name = "name")
@@ -57,6 +63,7 @@ public class Pet {
     private Date birthDate;
 
     @ManyToOne
+    @Fetch(FetchMode.JOIN)
     @JoinColumn(name = "type_id")
     private PetType type;
 
@@ -65,6 +72,11 @@ public class Pet {
     @JsonIgnore
     private Owner owner;
 
+    @Version
+    @Column(name = "version")
+    @JsonIgnore
+    private Integer version;
+
     @Override
     public String toString() {
         return new ToStringCreator(this)
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.model;
+
+import java.util.List;
+
+import jakarta.annotation.PostConstruct;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory copy of the {@link PetType} table, which almost never changes.
+ * <p>
+ * Loaded at startup and reloaded on a schedule or through {@link #refresh()}. Each load publishes an
+ * immutable snapshot, so reads never touch the database and never allocate.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PetTypeRegistry {
+
+    private final PetRepository petRepository;
+
+    private volatile Snapshot snapshot = new Snapshot(List.of());
+
+    @PostConstruct
+    void load() {
+        refresh();
+    }
+
+    @Scheduled(
+        fixedDelayString = "${petclinic.pet-types.refresh-interval:PT10M}",
+        initialDelayString = "${petclinic.pet-types.refresh-interval:PT10M}")
+    public void refresh() {
+        final Snapshot loaded = new Snapshot(petRepository.findPetTypes());
+        snapshot = loaded;
+        log.debug("Loaded {} pet types", loaded.sorted.size());
+    }
+
+    /**
+     * @return all {@link PetType}s ordered by name, as an unmodifiable list
+     */
+    public List<PetType> getPetTypes() {
+        return snapshot.sorted;
+    }
+
+    /**
+     * @return the {@link PetType} with the given id, or {@code null} if there is none
+     */
+    public PetType findPetTypeById(int typeId) {
+        return snapshot.byId(typeId);
+    }
+
+    private static final class Snapshot {
+
+        private final List<PetType> sorted;
+
+        // Pet type ids are small identity values, so a plain array makes a compact index
+        private final PetType[] byId;
+
+        Snapshot(List<PetType> types) {
+            this.sorted = List.copyOf(types);
+            final int maxId = types.stream().mapToInt(PetType::getId).max().orElse(-1);
+            this.byId = new PetType[maxId + 1];
+            for (PetType type : types) {
+                byId[type.getId()] = type;
+            }
+        }
+
+        PetType byId(int typeId) {
+            return typeId >= 0 && typeId < byId.length ? byId[typeId] : null;
+        }
+    }
+}
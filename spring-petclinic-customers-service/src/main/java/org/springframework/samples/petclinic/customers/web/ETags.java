@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.web;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Weak ETags of owners and their pets, built from entity versions.
+ * <p>
+ * A single owner is validated against the cached or loaded entity. The owner list is validated with
+ * the {@link org.springframework.samples.petclinic.customers.model.VersionSummary VersionSummary} of the
+ * owners and of the pets tables, so that a {@code 304 Not Modified} costs neither an entity load nor a
+ * serialization. Any single insert, update or delete changes it. It only stays the same when rows are
+ * deleted and as many added with the same version sum, an unedited pet removed and a new one registered
+ * for instance, hence weak ETags.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String of(Object... parts) {
+        return Arrays.stream(parts).map(String::valueOf).collect(Collectors.joining(".", "W/\"", "\""));
+    }
+
+    static boolean isConditional(WebRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null;
+    }
+}
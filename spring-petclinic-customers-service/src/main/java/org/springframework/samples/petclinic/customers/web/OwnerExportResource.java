@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.customers.model.Owner;
+import org.springframework.samples.petclinic.customers.model.OwnerRepository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Exports every owner, with their pets, as newline-delimited JSON.
+ * <p>
+ * Owners are read in id order, one keyset page at a time, and the persistence context is cleared after
+ * each page, so heap usage does not depend on the table size. The pets of a page are loaded in one batch
+ * when its first owner is written, so an export takes two statements per page whatever the number of pets.
+ */
+@RequestMapping("/owners")
+@RestController
+@Timed("petclinic.owner")
+@RequiredArgsConstructor
+@Slf4j
+class OwnerExportResource {
+
+    /**
+     * Same as the batch size of {@code Owner.pets}, so that the pets of a whole page come in one select.
+     */
+    private static final int PAGE_SIZE = 100;
+
+    private final OwnerRepository ownerRepository;
+
+    private final EntityManager entityManager;
+
+    private final ObjectMapper objectMapper;
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Transactional(readOnly = true)
+    public void exportAll(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        final OutputStream out = response.getOutputStream();
+        int count = 0;
+        try (SequenceWriter writer = objectMapper.writerFor(Owner.class).withRootValueSeparator("\n").writeValues(out)) {
+            List<Owner> page = ownerRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, PAGE_SIZE));
+            while (!page.isEmpty()) {
+                for (Owner owner : page) {
+                    writer.write(owner);
+                }
+                writer.flush();
+                count += page.size();
+                final int lastId = page.get(page.size() - 1).getId();
+                entityManager.clear();
+                page = page.size() < PAGE_SIZE
+                    ? List.of()
+                    : ownerRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, PAGE_SIZE));
+            }
+            if (count > 0) {
+                writer.flush();
+                out.write('\n');
+            }
+        }
+        log.info("Exported {} owners", count);
+    }
+}
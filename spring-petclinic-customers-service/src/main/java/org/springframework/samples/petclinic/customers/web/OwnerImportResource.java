@@ -0,0 +1,260 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.web;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk import of owners and their pets.
+ * <p>
+ * The request body is read as a stream and handed over to {@link OwnerImporter} row by row, so the
+ * size of a load is not bounded by the heap. The response reports how many rows were imported and why
+ * the others were rejected.
+ * <p>
+ * Accepted formats:
+ * <ul>
+ * <li>{@code application/json}: an array of owners, each with an optional {@code pets} array
+ * ({@code name}, {@code birthDate}, {@code typeId}). Rows are numbered from 1.</li>
+ * <li>{@code text/csv}: a header line naming the columns {@code firstName}, {@code lastName},
+ * {@code address}, {@code city}, {@code telephone} and optionally {@code petName}, {@code petBirthDate},
+ * {@code petTypeId}. Consecutive lines with the same owner columns describe one owner with several
+ * pets. Rows are numbered by the line the owner starts on.</li>
+ * </ul>
+ */
+@RequestMapping("/owners")
+@RestController
+@Timed("petclinic.owner")
+@RequiredArgsConstructor
+class OwnerImportResource {
+
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    private static final List<String> OWNER_COLUMNS = List.of("firstName", "lastName", "address", "city", "telephone");
+
+    private final OwnerImporter ownerImporter;
+
+    private final ObjectMapper objectMapper;
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public OwnerImporter.Result importJson(HttpServletRequest request) throws IOException {
+        final OwnerImporter.Session session = ownerImporter.newSession();
+        try (JsonParser parser = objectMapper.createParser(request.getInputStream())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Expected a JSON array of owners");
+            }
+            int row = 0;
+            try {
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                    row++;
+                    if (token != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        session.reject(row, "Expected a JSON object");
+                        continue;
+                    }
+                    final JsonNode node = parser.readValueAsTree();
+                    try {
+                        session.add(row, objectMapper.treeToValue(node, OwnerImportRow.class));
+                    } catch (JsonProcessingException ex) {
+                        session.reject(row, ex.getOriginalMessage());
+                    }
+                }
+            } catch (JsonProcessingException ex) {
+                // Malformed JSON: rows read so far are still imported
+                session.reject(row, "Malformed JSON, remaining rows skipped: " + ex.getOriginalMessage());
+            }
+        }
+        return session.finish();
+    }
+
+    @PostMapping(value = "/import", consumes = TEXT_CSV_VALUE)
+    public OwnerImporter.Result importCsv(HttpServletRequest request) throws IOException {
+        final Charset charset = request.getCharacterEncoding() != null
+            ? Charset.forName(request.getCharacterEncoding()) : StandardCharsets.UTF_8;
+        final OwnerImporter.Session session = ownerImporter.newSession();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), charset))) {
+            final String header = reader.readLine();
+            if (header == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing CSV header");
+            }
+            final Map<String, Integer> columns = columns(header);
+
+            List<String> ownerKey = null;
+            OwnerImportRow owner = null;
+            String ownerError = null;
+            int ownerLine = 0;
+            int lineNumber = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                final List<String> fields = parseCsvLine(line);
+                final List<String> key = OWNER_COLUMNS.stream().map(column -> field(fields, columns, column)).toList();
+                if (!key.equals(ownerKey)) {
+                    complete(session, ownerLine, owner, ownerError);
+                    ownerKey = key;
+                    owner = toOwnerRow(key);
+                    ownerError = null;
+                    ownerLine = lineNumber;
+                }
+                if (ownerError == null) {
+                    try {
+                        final PetRequest pet = toPetRequest(fields, columns);
+                        if (pet != null) {
+                            owner.getPets().add(pet);
+                        }
+                    } catch (IllegalArgumentException ex) {
+                        ownerError = "Line " + lineNumber + ": " + ex.getMessage();
+                    }
+                }
+            }
+            complete(session, ownerLine, owner, ownerError);
+        }
+        return session.finish();
+    }
+
+    private static void complete(OwnerImporter.Session session, int line, OwnerImportRow owner, String error) {
+        if (owner == null) {
+            return;
+        }
+        if (error != null) {
+            session.reject(line, error);
+        } else {
+            session.add(line, owner);
+        }
+    }
+
+    private static Map<String, Integer> columns(String header) {
+        final Map<String, Integer> columns = new HashMap<>();
+        final List<String> names = parseCsvLine(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim(), i);
+        }
+        for (String column : OWNER_COLUMNS) {
+            if (!columns.containsKey(column)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing CSV column " + column);
+            }
+        }
+        return columns;
+    }
+
+    private static OwnerImportRow toOwnerRow(List<String> ownerFields) {
+        final OwnerImportRow row = new OwnerImportRow();
+        row.setFirstName(ownerFields.get(0));
+        row.setLastName(ownerFields.get(1));
+        row.setAddress(ownerFields.get(2));
+        row.setCity(ownerFields.get(3));
+        row.setTelephone(ownerFields.get(4));
+        return row;
+    }
+
+    private static PetRequest toPetRequest(List<String> fields, Map<String, Integer> columns) {
+        final String name = field(fields, columns, "petName");
+        if (name == null) {
+            return null;
+        }
+        final PetRequest pet = new PetRequest();
+        pet.setName(name);
+        final String birthDate = field(fields, columns, "petBirthDate");
+        if (birthDate != null) {
+            try {
+                pet.setBirthDate(Date.from(LocalDate.parse(birthDate).atStartOfDay(ZoneOffset.UTC).toInstant()));
+            } catch (DateTimeParseException ex) {
+                throw new IllegalArgumentException("petBirthDate " + birthDate + " is not a yyyy-MM-dd date");
+            }
+        }
+        final String typeId = field(fields, columns, "petTypeId");
+        try {
+            pet.setTypeId(typeId == null ? 0 : Integer.parseInt(typeId));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("petTypeId " + typeId + " is not a number");
+        }
+        return pet;
+    }
+
+    /**
+     * @return the trimmed value of the column, or {@code null} when it is absent or empty
+     */
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        final Integer index = columns.get(column);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        final String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Splits one CSV line on commas. Fields may be enclosed in double quotes, a doubled quote standing
+     * for a literal one; quoted line breaks are not supported.
+     */
+    static List<String> parseCsvLine(String line) {
+        final List<String> fields = new ArrayList<>();
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
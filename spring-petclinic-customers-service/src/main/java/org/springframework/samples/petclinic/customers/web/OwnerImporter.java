@@ -0,0 +1,225 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.web;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.samples.petclinic.customers.model.Owner;
+import org.springframework.samples.petclinic.customers.model.OwnerNameIndex;
+import org.springframework.samples.petclinic.customers.model.Pet;
+import org.springframework.samples.petclinic.customers.model.PetType;
+import org.springframework.samples.petclinic.customers.model.PetTypeRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Inserts imported owners and their pets in chunks, one transaction per chunk.
+ * <p>
+ * Rows are validated before they reach the database and invalid ones are reported without stopping the
+ * load. Inside a chunk Hibernate groups the inserts into JDBC batches. When a chunk is rejected by the
+ * database its rows are retried one by one, so only the faulty rows are reported and the others are kept.
+ */
+@Component
+@Slf4j
+class OwnerImporter {
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final PetTypeRegistry petTypeRegistry;
+
+    private final Validator validator;
+
+    private final ObjectProvider<OwnerNameIndex> ownerNameIndex;
+
+    private final int chunkSize;
+
+    private final int maxReportedErrors;
+
+    OwnerImporter(EntityManager entityManager,
+                  PlatformTransactionManager transactionManager,
+                  PetTypeRegistry petTypeRegistry,
+                  Validator validator,
+                  ObjectProvider<OwnerNameIndex> ownerNameIndex,
+                  @Value("${petclinic.owners.import.chunk-size:500}") int chunkSize,
+                  @Value("${petclinic.owners.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.petTypeRegistry = petTypeRegistry;
+        this.validator = validator;
+        this.ownerNameIndex = ownerNameIndex;
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    /**
+     * @return a new import, to be fed row by row and closed with {@link Session#finish()}
+     */
+    Session newSession() {
+        return new Session();
+    }
+
+    record Result(int rows, int imported, int rejected, List<RowError> errors) {
+    }
+
+    record RowError(int row, String message) {
+    }
+
+    private record PendingRow(int row, OwnerImportRow source) {
+    }
+
+    /**
+     * State of a single import. Not thread-safe.
+     */
+    class Session {
+
+        private final List<PendingRow> chunk = new ArrayList<>(chunkSize);
+
+        private final List<RowError> errors = new ArrayList<>();
+
+        private int rows;
+
+        private int imported;
+
+        private int rejected;
+
+        private final long startedAt = System.nanoTime();
+
+        void add(int row, OwnerImportRow source) {
+            rows++;
+            final String error = validate(source);
+            if (error != null) {
+                rejectRow(row, error);
+                return;
+            }
+            chunk.add(new PendingRow(row, source));
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void reject(int row, String message) {
+            rows++;
+            rejectRow(row, message);
+        }
+
+        Result finish() {
+            flush();
+            log.info("Imported {} owners out of {} rows in {} ms, {} rejected",
+                imported, rows, (System.nanoTime() - startedAt) / 1_000_000, rejected);
+            return new Result(rows, imported, rejected, errors);
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                imported += persist(chunk);
+            } catch (PersistenceException | DataAccessException | TransactionException ex) {
+                log.warn("Import chunk of {} rows rejected, retrying row by row: {}", chunk.size(), ex.getMessage());
+                for (PendingRow pending : chunk) {
+                    try {
+                        imported += persist(List.of(pending));
+                    } catch (PersistenceException | DataAccessException | TransactionException rowEx) {
+                        rejectRow(pending.row(), NestedExceptionUtils.getMostSpecificCause(rowEx).getMessage());
+                    }
+                }
+            }
+            chunk.clear();
+        }
+
+        private void rejectRow(int row, String message) {
+            rejected++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new RowError(row, message));
+            }
+        }
+    }
+
+    /**
+     * Owners are rebuilt from their source row on every attempt: entities persisted by a rolled back
+     * transaction keep their generated id and could not be persisted again.
+     */
+    private int persist(List<PendingRow> rows) {
+        final List<Owner> owners = new ArrayList<>(rows.size());
+        transactionTemplate.executeWithoutResult(status -> {
+            for (PendingRow pending : rows) {
+                final Owner owner = toOwner(pending.source());
+                entityManager.persist(owner);
+                owners.add(owner);
+            }
+            entityManager.flush();
+            entityManager.clear();
+        });
+        ownerNameIndex.ifAvailable(index -> owners.forEach(index::put));
+        return owners.size();
+    }
+
+    private String validate(OwnerImportRow source) {
+        final List<String> messages = validator.validate(toOwnerFields(source)).stream()
+            .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+            .sorted()
+            .collect(Collectors.toList());
+        for (int i = 0; i < source.getPets().size(); i++) {
+            final PetRequest pet = source.getPets().get(i);
+            if (!StringUtils.hasText(pet.getName())) {
+                messages.add("pets[" + i + "].name must not be blank");
+            }
+            if (petTypeRegistry.findPetTypeById(pet.getTypeId()) == null) {
+                messages.add("pets[" + i + "].typeId " + pet.getTypeId() + " is not a known pet type");
+            }
+        }
+        return messages.isEmpty() ? null : String.join(", ", messages);
+    }
+
+    private Owner toOwner(OwnerImportRow source) {
+        final Owner owner = toOwnerFields(source);
+        for (PetRequest petRequest : source.getPets()) {
+            final PetType type = petTypeRegistry.findPetTypeById(petRequest.getTypeId());
+            final Pet pet = new Pet();
+            pet.setName(petRequest.getName());
+            pet.setBirthDate(petRequest.getBirthDate());
+            pet.setType(type);
+            owner.addPet(pet);
+        }
+        return owner;
+    }
+
+    private static Owner toOwnerFields(OwnerImportRow source) {
+        final Owner owner = new Owner();
+        owner.setFirstName(source.getFirstName());
+        owner.setLastName(source.getLastName());
+        owner.setAddress(source.getAddress());
+        owner.setCity(source.getCity());
+        owner.setTelephone(source.getTelephone());
+        return owner;
+    }
+}
@@ -18,10 +18,21 @@ package org.springframework.samples.petclinic.customers.web;
 import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.samples.petclinic.customers.model.Owner;
+import org.springframework.samples.petclinic.customers.model.OwnerName;
+import org.springframework.samples.petclinic.customers.model.OwnerNameIndex;
 import org.springframework.samples.petclinic.customers.model.OwnerRepository;
+import org.springframework.samples.petclinic.customers.model.Pet;
+import org.springframework.samples.petclinic.customers.model.VersionSummary;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
@@ -42,31 +53,136 @@ import java.util.Optional;
 @Slf4j
 class OwnerResource {
 
+    static final int MAX_PAGE_SIZE = 500;
+
+    static final String OWNERS_CACHE = "owners";
+
     private final OwnerRepository ownerRepository;
 
+    private final ObjectProvider<OwnerNameIndex> ownerNameIndex;
+
+    private final CacheManager cacheManager;
+
     /**
      * Create Owner
      */
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public Owner createOwner(@Valid @RequestBody Owner owner) {
-        return ownerRepository.save(owner);
+        final Owner savedOwner = ownerRepository.save(owner);
+        ownerNameIndex.ifAvailable(index -> index.put(savedOwner));
+        return savedOwner;
     }
 
     /**
-     * Read single Owner
+     * Read single Owner, with an ETag covering the owner and its pets. The ETag of a cached owner is
+     * checked without going to the database.
      */
     @GetMapping(value = "/{ownerId}")
-    public Optional<Owner> findOwner(@PathVariable("ownerId") @Min(1) int ownerId) {
-        return ownerRepository.findById(ownerId);
+    public Optional<Owner> findOwner(@PathVariable("ownerId") @Min(1) int ownerId, WebRequest request) {
+        final Optional<Owner> owner = findCachedOwner(ownerId);
+        if (owner.isPresent() && request.checkNotModified(etag(owner.get()))) {
+            return null;
+        }
+        return owner;
+    }
+
+    private Optional<Owner> findCachedOwner(int ownerId) {
+        final Cache owners = cacheManager.getCache(OWNERS_CACHE);
+        final Owner cached = owners != null ? owners.get(ownerId, Owner.class) : null;
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        final Optional<Owner> owner = ownerRepository.findById(ownerId);
+        if (owners != null) {
+            owner.ifPresent(found -> owners.put(ownerId, found));
+        }
+        return owner;
     }
 
     /**
-     * Read List of Owners
+     * Read several Owners in a single round trip
+     */
+    @GetMapping(params = "ownerId")
+    public List<Owner> findOwners(@RequestParam("ownerId") List<Integer> ownerIds) {
+        return ownerRepository.findAllById(ownerIds);
+    }
+
+    /**
+     * Read List of Owners, with an ETag covering every owner and pet
      */
     @GetMapping
-    public List<Owner> findAll() {
-        return ownerRepository.findAll();
+    public List<Owner> findAll(WebRequest request) {
+        if (ETags.isConditional(request)
+            && request.checkNotModified(etag(ownerRepository.summarizeVersions(), ownerRepository.summarizePetVersions()))) {
+            return null;
+        }
+        final List<Owner> owners = ownerRepository.findAll();
+        final VersionSummary pets = VersionSummary.of(owners.stream()
+            .flatMap(owner -> owner.getPets().stream())
+            .map(Pet::getVersion)
+            .toList());
+        if (request.checkNotModified(etag(VersionSummary.of(owners.stream().map(Owner::getVersion).toList()), pets))) {
+            return null;
+        }
+        return owners;
+    }
+
+    /**
+     * Read one page of Owners, ordered by id
+     */
+    @GetMapping(params = "page")
+    public List<Owner> findPage(
+        @RequestParam("page") @Min(0) int page,
+        @RequestParam(value = "size", defaultValue = "20") int size) {
+        return ownerRepository.findAllBy(PageRequest.of(Math.max(page, 0), pageSize(size), Sort.by("id")));
+    }
+
+    /**
+     * Read the Owners following the given id, ordered by id
+     */
+    @GetMapping(params = "afterId")
+    public List<Owner> findAfter(
+        @RequestParam("afterId") @Min(0) int afterId,
+        @RequestParam(value = "size", defaultValue = "20") int size) {
+        return ownerRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, pageSize(size)));
+    }
+
+    /**
+     * Search Owners by last name prefix, ignoring case
+     */
+    @GetMapping(params = "lastName")
+    public List<Owner> findByLastName(
+        @RequestParam("lastName") String lastName,
+        @RequestParam(value = "size", defaultValue = "20") int size) {
+        return ownerRepository.findByLastNameStartingWithOrderByLastNameAscIdAsc(lastName, PageRequest.of(0, pageSize(size)));
+    }
+
+    /**
+     * Type-ahead on Owner last names, answered from memory when the owner name index is enabled
+     */
+    @GetMapping("/names")
+    public List<OwnerName> findNames(
+        @RequestParam("lastName") String lastName,
+        @RequestParam(value = "size", defaultValue = "10") int size) {
+        final OwnerNameIndex index = ownerNameIndex.getIfAvailable();
+        if (index != null) {
+            return index.search(lastName, pageSize(size));
+        }
+        return ownerRepository.findOwnerNamesByLastNameStartingWithOrderByLastNameAscIdAsc(lastName, PageRequest.of(0, pageSize(size)));
+    }
+
+    private static String etag(Owner owner) {
+        final VersionSummary pets = VersionSummary.of(owner.getPets().stream().map(Pet::getVersion).toList());
+        return ETags.of(owner.getVersion(), pets.rows(), pets.versions());
+    }
+
+    private static String etag(VersionSummary owners, VersionSummary pets) {
+        return ETags.of(owners.rows(), owners.versions(), pets.rows(), pets.versions());
+    }
+
+    private static int pageSize(int size) {
+        return Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
     }
 
     /**
@@ -74,6 +190,7 @@ class OwnerResource {
      */
     @PutMapping(value = "/{ownerId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
+    @CacheEvict(cacheNames = OWNERS_CACHE, key = "#ownerId")
     public void updateOwner(@PathVariable("ownerId") @Min(1) int ownerId, @Valid @RequestBody Owner ownerRequest) {
         final Optional<Owner> owner = ownerRepository.findById(ownerId);
         final Owner ownerModel = owner.orElseThrow(() -> new ResourceNotFoundException("Owner "+ownerId+" not found"));
@@ -86,5 +203,6 @@ class OwnerResource {
         ownerModel.setTelephone(ownerRequest.getTelephone());
         log.info("Saving owner {}", ownerModel);
         ownerRepository.save(ownerModel);
+        ownerNameIndex.ifAvailable(index -> index.put(ownerModel));
     }
 }
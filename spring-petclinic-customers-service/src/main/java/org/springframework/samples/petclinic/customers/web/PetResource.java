@@ -18,6 +18,9 @@ package org.springframework.samples.petclinic.customers.web;
 import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.http.HttpStatus;
 import org.springframework.samples.petclinic.customers.model.*;
 import org.springframework.web.bind.annotation.*;
@@ -41,15 +44,18 @@ class PetResource {
 
     private final PetRepository petRepository;
     private final OwnerRepository ownerRepository;
+    private final PetTypeRegistry petTypeRegistry;
+    private final CacheManager cacheManager;
 
 
     @GetMapping("/petTypes")
     public List<PetType> getPetTypes() {
-        return petRepository.findPetTypes();
+        return petTypeRegistry.getPetTypes();
     }
 
     @PostMapping("/owners/{ownerId}/pets")
     @ResponseStatus(HttpStatus.CREATED)
+    @CacheEvict(cacheNames = OwnerResource.OWNERS_CACHE, key = "#ownerId")
     public Pet processCreationForm(
         @RequestBody PetRequest petRequest,
         @PathVariable("ownerId") @Min(1) int ownerId) {
@@ -68,6 +74,11 @@ class PetResource {
         int petId = petRequest.getId();
         Pet pet = findPetById(petId);
         save(pet, petRequest);
+        // The owner id is not part of the URI, so the cached owner is evicted by hand
+        final Cache owners = cacheManager.getCache(OwnerResource.OWNERS_CACHE);
+        if (owners != null) {
+            owners.evict(pet.getOwner().getId());
+        }
     }
 
     private Pet save(final Pet pet, final PetRequest petRequest) {
@@ -75,8 +86,10 @@ class PetResource {
         pet.setName(petRequest.getName());
         pet.setBirthDate(petRequest.getBirthDate());
 
-        petRepository.findPetTypeById(petRequest.getTypeId())
-            .ifPresent(pet::setType);
+        final PetType petType = petTypeRegistry.findPetTypeById(petRequest.getTypeId());
+        if (petType != null) {
+            pet.setType(petType);
+        }
 
         log.info("Saving pet {}", pet);
         return petRepository.save(pet);
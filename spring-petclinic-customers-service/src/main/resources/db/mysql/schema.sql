@@ -12,10 +12,12 @@ CREATE TABLE IF NOT EXISTS types (
 CREATE TABLE IF NOT EXISTS owners (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
   first_name VARCHAR(30),
-  last_name VARCHAR(30),
+  -- Compared and sorted ignoring case, so that last name searches match any case through the index
+  last_name VARCHAR(30) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci,
   address VARCHAR(255),
   city VARCHAR(80),
   telephone VARCHAR(20),
+  version INT(4) UNSIGNED NOT NULL DEFAULT 0,
   INDEX(last_name)
 ) engine=InnoDB;
 
@@ -25,7 +27,13 @@ CREATE TABLE IF NOT EXISTS pets (
   birth_date DATE,
   type_id INT(4) UNSIGNED NOT NULL,
   owner_id INT(4) UNSIGNED NOT NULL,
+  version INT(4) UNSIGNED NOT NULL DEFAULT 0,
   INDEX(name),
   FOREIGN KEY (owner_id) REFERENCES owners(id),
   FOREIGN KEY (type_id) REFERENCES types(id)
 ) engine=InnoDB;
+
+CREATE TABLE IF NOT EXISTS id_generators (
+  name VARCHAR(30) NOT NULL PRIMARY KEY,
+  next_val INT(4) UNSIGNED NOT NULL
+) engine=InnoDB;
@@ -0,0 +1,75 @@
+package org.springframework.samples.petclinic.customers.config;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.samples.petclinic.customers.model.OwnerRepository;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * What the instance tells Eureka when nothing answers the warm-up requests.
+ */
+class WarmUpRegistrationTest {
+
+    private final ApplicationInfoManager eureka = mock(ApplicationInfoManager.class);
+
+    private final WebServerApplicationContext context = mock(WebServerApplicationContext.class, RETURNS_DEEP_STUBS);
+
+    private final WarmUpProperties properties = new WarmUpProperties();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        final int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        given(context.getWebServer().getPort()).willReturn(closedPort);
+        properties.setOwners(0);
+        properties.setRequests(List.of("/owners/1"));
+    }
+
+    @Test
+    void instanceIsMarkedUpAfterAFailedWarmUpByDefault() {
+        final WarmUp warmUp = warmUp();
+
+        warmUp.run(null);
+
+        verify(eureka).setInstanceStatus(InstanceStatus.UP);
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(warmUp.health().getDetails()).containsEntry("failures", 1);
+    }
+
+    @Test
+    void instanceStaysOutOfServiceAfterAFailedWarmUpWhenConfigured() {
+        properties.setRegisterOnFailure(false);
+        final WarmUp warmUp = warmUp();
+
+        warmUp.run(null);
+
+        verify(eureka).setInstanceStatus(InstanceStatus.OUT_OF_SERVICE);
+        verify(eureka, never()).setInstanceStatus(InstanceStatus.UP);
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+    }
+
+    private WarmUp warmUp() {
+        return new WarmUp(properties, context, mock(OwnerRepository.class), new RestTemplateBuilder(),
+            new SimpleMeterRegistry(), new StaticListableBeanFactory(Map.of("eureka", eureka)).getBeanProvider(ApplicationInfoManager.class));
+    }
+}
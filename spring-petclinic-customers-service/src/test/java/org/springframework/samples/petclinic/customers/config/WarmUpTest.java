@@ -0,0 +1,50 @@
+package org.springframework.samples.petclinic.customers.config;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "petclinic.warm-up.owners=2",
+    "petclinic.warm-up.requests=/no-such-path"
+})
+@ActiveProfiles("test")
+class WarmUpTest {
+
+    @Autowired
+    WarmUp warmUp;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @MockBean
+    ApplicationInfoManager eureka;
+
+    @Test
+    void firstOwnersAreCachedBeforeTheInstanceIsMarkedUp() {
+        assertThat(warmUp.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(warmUp.health().getDetails()).containsEntry("requests", 3).containsEntry("failures", 1);
+        assertThat(cacheManager.getCache("owners").get(1)).isNotNull();
+        assertThat(cacheManager.getCache("owners").get(2)).isNotNull();
+
+        assertThat(meterRegistry.get("petclinic.warmup.request").tag("uri", "/owners/{ownerId}").tag("outcome", "SUCCESS").timer().count())
+            .isEqualTo(2);
+        assertThat(meterRegistry.get("petclinic.warmup.request").tag("uri", "/no-such-path").tag("outcome", "FAILURE").timer().count())
+            .isEqualTo(1);
+        // Registered despite the failed request, as register-on-failure is on by default
+        verify(eureka).setInstanceStatus(InstanceStatus.UP);
+    }
+}
@@ -0,0 +1,70 @@
+package org.springframework.samples.petclinic.customers.model;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class OwnerNameIndexTest {
+
+    private OwnerRepository ownerRepository;
+
+    private OwnerNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        ownerRepository = mock(OwnerRepository.class);
+        given(ownerRepository.findAllNames()).willReturn(List.of(
+            new OwnerName(1, "George", "Franklin"),
+            new OwnerName(2, "Betty", "Davis"),
+            new OwnerName(4, "Harold", "Davis"),
+            new OwnerName(6, "Jean", "Coleman")));
+        index = new OwnerNameIndex(ownerRepository);
+        index.reload();
+    }
+
+    @Test
+    void shouldFindOwnersByLastNamePrefixIgnoringCase() {
+        assertThat(index.search("da", 10))
+            .extracting(OwnerName::id)
+            .containsExactly(2, 4);
+    }
+
+    @Test
+    void shouldLimitResults() {
+        assertThat(index.search("", 3)).hasSize(3);
+    }
+
+    @Test
+    void shouldReindexRenamedOwner() {
+        index.put(owner(2, "Betty", "Franklin"));
+
+        assertThat(index.search("Da", 10)).extracting(OwnerName::id).containsExactly(4);
+        assertThat(index.search("Fr", 10)).extracting(OwnerName::id).containsExactly(1, 2);
+    }
+
+    @Test
+    void shouldKeepOwnersPutWhileReloading() {
+        given(ownerRepository.findAllNames()).willAnswer(invocation -> {
+            // Saved once the names were read, but before the reloaded snapshot replaces the current one
+            index.put(owner(11, "Maria", "Davis"));
+            return List.of(new OwnerName(2, "Betty", "Davis"), new OwnerName(4, "Harold", "Davis"));
+        });
+
+        index.reload();
+
+        assertThat(index.search("da", 10)).extracting(OwnerName::id).containsExactly(2, 4, 11);
+    }
+
+    private static Owner owner(int id, String firstName, String lastName) {
+        Owner owner = mock(Owner.class);
+        given(owner.getId()).willReturn(id);
+        given(owner.getFirstName()).willReturn(firstName);
+        given(owner.getLastName()).willReturn(lastName);
+        return owner;
+    }
+}
@@ -0,0 +1,40 @@
+package org.springframework.samples.petclinic.customers.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the last_name column, which ignores case, and {@link OwnerNameIndex} find the same owners.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+class OwnerNameSearchTest {
+
+    @Autowired
+    OwnerRepository ownerRepository;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"da", "DA", "Davis", "mc", "E", ""})
+    void indexAndDatabaseFindTheSameOwners(String lastNamePrefix) {
+        final OwnerNameIndex index = new OwnerNameIndex(ownerRepository);
+        index.reload();
+
+        assertThat(ownerRepository.findOwnerNamesByLastNameStartingWithOrderByLastNameAscIdAsc(lastNamePrefix, PageRequest.of(0, 20)))
+            .isNotEmpty()
+            .containsExactlyElementsOf(index.search(lastNamePrefix, 20));
+    }
+
+    @Test
+    void ownersAreFoundByLastNamePrefixIgnoringCase() {
+        assertThat(ownerRepository.findByLastNameStartingWithOrderByLastNameAscIdAsc("davis", PageRequest.of(0, 20)))
+            .extracting(Owner::getId)
+            .containsExactly(2, 4);
+    }
+}
@@ -0,0 +1,136 @@
+package org.springframework.samples.petclinic.customers.web;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks what the {@value OwnerResource#OWNERS_CACHE} cache saves the database, by counting the SQL statements.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class OwnerCacheTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void clear() {
+        cacheManager.getCache(OwnerResource.OWNERS_CACHE).clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void cachedOwnerIsValidatedWithoutStatements() throws Exception {
+        final String etag = mvc.perform(get("/owners/6").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        statistics.clear();
+
+        mvc.perform(get("/owners/6").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void ownerIsReadFromTheCacheOnceLoaded() throws Exception {
+        final double hits = cacheGets("hit");
+        final double misses = cacheGets("miss");
+
+        mvc.perform(get("/owners/1").accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk());
+        statistics.clear();
+        mvc.perform(get("/owners/1").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.lastName").value("Franklin"));
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(cacheGets("miss")).isEqualTo(misses + 1);
+        assertThat(cacheGets("hit")).isEqualTo(hits + 1);
+    }
+
+    @Test
+    void ownerUpdateEvictsTheCachedOwner() throws Exception {
+        mvc.perform(get("/owners/2").accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk());
+        assertThat(cacheManager.getCache(OwnerResource.OWNERS_CACHE).get(2)).isNotNull();
+
+        mvc.perform(put("/owners/2").contentType(MediaType.APPLICATION_JSON).content("""
+                {"firstName": "Betty", "lastName": "Davis", "address": "638 Cardinal Ave.", "city": "Madison", "telephone": "6085551749"}
+                """))
+            .andExpect(status().isNoContent());
+
+        assertThat(cacheManager.getCache(OwnerResource.OWNERS_CACHE).get(2)).isNull();
+        mvc.perform(get("/owners/2").accept(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$.address").value("638 Cardinal Ave."));
+    }
+
+    @Test
+    void newPetEvictsTheCachedOwner() throws Exception {
+        mvc.perform(get("/owners/3").accept(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$.pets.length()").value(2));
+
+        mvc.perform(post("/owners/3/pets").contentType(MediaType.APPLICATION_JSON).content("""
+                {"name": "Tom", "birthDate": "2020-01-01", "typeId": 1}
+                """))
+            .andExpect(status().isCreated());
+
+        assertThat(cacheManager.getCache(OwnerResource.OWNERS_CACHE).get(3)).isNull();
+        mvc.perform(get("/owners/3").accept(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$.pets.length()").value(3));
+    }
+
+    @Test
+    void petUpdateEvictsTheCachedOwner() throws Exception {
+        mvc.perform(get("/owners/4").accept(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$.pets[0].name").value("Iggy"));
+
+        mvc.perform(put("/owners/4/pets/5").contentType(MediaType.APPLICATION_JSON).content("""
+                {"id": 5, "name": "Iggie", "birthDate": "2010-11-30", "typeId": 3}
+                """))
+            .andExpect(status().isNoContent());
+
+        assertThat(cacheManager.getCache(OwnerResource.OWNERS_CACHE).get(4)).isNull();
+        mvc.perform(get("/owners/4").accept(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$.pets[0].name").value("Iggie"));
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", OwnerResource.OWNERS_CACHE).tag("result", result)
+            .functionCounter().count();
+    }
+}
@@ -0,0 +1,86 @@
+package org.springframework.samples.petclinic.customers.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+    "petclinic.owners.import.chunk-size=2",
+    "spring.cache.type=none"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class OwnerImportResourceTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Test
+    void shouldImportJsonAndReportInvalidRows() throws Exception {
+        final String owners = """
+            [
+              {"firstName": "Anna", "lastName": "Importer", "address": "1 Main St.", "city": "Madison", "telephone": "6085551111",
+               "pets": [{"name": "Rex", "birthDate": "2020-01-02", "typeId": 2}]},
+              {"firstName": "Bob", "lastName": "Importer", "address": "2 Main St.", "city": "Madison", "telephone": "not a phone"},
+              {"firstName": "Carl", "lastName": "Importer", "address": "3 Main St.", "city": "Madison", "telephone": "6085553333",
+               "pets": [{"name": "Tom", "typeId": 99}]},
+              {"firstName": "Dana", "lastName": "Importer", "address": "4 Main St.", "city": "Madison", "telephone": "6085554444"}
+            ]
+            """;
+
+        mvc.perform(post("/owners/import").contentType(MediaType.APPLICATION_JSON).content(owners))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.rows").value(4))
+            .andExpect(jsonPath("$.imported").value(2))
+            .andExpect(jsonPath("$.rejected").value(2))
+            .andExpect(jsonPath("$.errors[0].row").value(2))
+            .andExpect(jsonPath("$.errors[1].row").value(3));
+
+        mvc.perform(get("/owners?lastName=Importer").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].firstName").value("Anna"))
+            .andExpect(jsonPath("$[0].pets[0].name").value("Rex"))
+            .andExpect(jsonPath("$[1].firstName").value("Dana"));
+    }
+
+    @Test
+    void shouldImportCsvGroupingPetsByOwner() throws Exception {
+        final String owners = """
+            firstName,lastName,address,city,telephone,petName,petBirthDate,petTypeId
+            Erin,Csvimport,"5 Main St., Apt 2",Madison,6085555555,Milo,2019-05-06,1
+            Erin,Csvimport,"5 Main St., Apt 2",Madison,6085555555,Luna,2018-03-04,1
+            Fred,Csvimport,6 Main St.,Madison,6085556666,Kiki,someday,1
+            """;
+
+        mvc.perform(post("/owners/import").contentType(OwnerImportResource.TEXT_CSV_VALUE).content(owners))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.rows").value(2))
+            .andExpect(jsonPath("$.imported").value(1))
+            .andExpect(jsonPath("$.errors[0].row").value(4));
+
+        mvc.perform(get("/owners?lastName=Csvimport").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].address").value("5 Main St., Apt 2"))
+            .andExpect(jsonPath("$[0].pets.length()").value(2));
+    }
+
+    @Test
+    void shouldParseQuotedCsvFields() {
+        assertThat(OwnerImportResource.parseCsvLine("a,\"b, \"\"c\"\"\",,d"))
+            .isEqualTo(List.of("a", "b, \"c\"", "", "d"));
+    }
+}
@@ -0,0 +1,147 @@
+package org.springframework.samples.petclinic.customers.web;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Guards the fetch plans of {@link org.springframework.samples.petclinic.customers.model.OwnerRepository}
+ * against N+1 regressions by counting the SQL statements issued per endpoint.
+ */
+@SpringBootTest(properties = {
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "spring.cache.type=none"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class OwnerResourceStatementsTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void clearStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void ownerDetailsUsesSingleStatement() throws Exception {
+        mvc.perform(get("/owners/6").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.pets.length()").value(2))
+            .andExpect(jsonPath("$.pets[0].type.name").value("cat"));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void ownerListLoadsPetsInOneBatch() throws Exception {
+        mvc.perform(get("/owners").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(10))
+            .andExpect(jsonPath("$[*].pets[*]", hasSize(13)))
+            .andExpect(jsonPath("$[*].pets[*].type.name", hasItem("cat")));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void multipleOwnersUseSingleStatement() throws Exception {
+        mvc.perform(get("/owners?ownerId=1,3,6").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(3));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void ownerScrollLoadsPetsInOneBatch() throws Exception {
+        mvc.perform(get("/owners?afterId=0&size=5").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(5))
+            .andExpect(jsonPath("$[2].pets.length()").value(2));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void exportLoadsPetsInOneBatchPerPage() throws Exception {
+        final String export = mvc.perform(get("/owners/export").accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andReturn().getResponse().getContentAsString();
+
+        assertThat(export).endsWith("}\n");
+        final String[] lines = export.split("\n");
+        assertThat(lines).hasSize(10);
+        for (int i = 0; i < lines.length; i++) {
+            assertThat(objectMapper.readTree(lines[i]).get("id").asInt()).isEqualTo(i + 1);
+        }
+        final JsonNode owner = objectMapper.readTree(lines[5]);
+        assertThat(owner.get("pets")).hasSize(2);
+        assertThat(owner.get("pets").get(0).get("type").get("name").asText()).isEqualTo("cat");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void unchangedOwnerIsAnsweredWithNotModified() throws Exception {
+        final String etag = mvc.perform(get("/owners/6").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        statistics.clear();
+
+        mvc.perform(get("/owners/6").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void changedOwnerIsSentWithItsNewETag() throws Exception {
+        final String etag = mvc.perform(get("/owners/7").accept(MediaType.APPLICATION_JSON))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mvc.perform(put("/owners/7").contentType(MediaType.APPLICATION_JSON).content("""
+                {"firstName": "Jeff", "lastName": "Black", "address": "1451 Oak Blvd.", "city": "Monona", "telephone": "6085555387"}
+                """))
+            .andExpect(status().isNoContent());
+
+        mvc.perform(get("/owners/7").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+            .andExpect(jsonPath("$.address").value("1451 Oak Blvd."));
+    }
+}
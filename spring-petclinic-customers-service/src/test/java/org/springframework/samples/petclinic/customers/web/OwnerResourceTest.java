@@ -0,0 +1,73 @@
+package org.springframework.samples.petclinic.customers.web;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.customers.model.Owner;
+import org.springframework.samples.petclinic.customers.model.OwnerRepository;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(OwnerResource.class)
+@ActiveProfiles("test")
+class OwnerResourceTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    OwnerRepository ownerRepository;
+
+    @Test
+    void shouldScrollOwnersAfterGivenId() throws Exception {
+        given(ownerRepository.findByIdGreaterThanOrderByIdAsc(10, PageRequest.of(0, 2)))
+            .willReturn(List.of(owner("Franklin"), owner("Davis")));
+
+        mvc.perform(get("/owners?afterId=10&size=2").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].lastName").value("Franklin"))
+            .andExpect(jsonPath("$[1].lastName").value("Davis"));
+    }
+
+    @Test
+    void shouldCapPageSize() throws Exception {
+        given(ownerRepository.findAllBy(PageRequest.of(1, OwnerResource.MAX_PAGE_SIZE, Sort.by("id"))))
+            .willReturn(List.of(owner("Franklin")));
+
+        mvc.perform(get("/owners?page=1&size=100000").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].lastName").value("Franklin"));
+    }
+
+    @Test
+    void shouldSearchOwnersByLastNamePrefix() throws Exception {
+        given(ownerRepository.findByLastNameStartingWithOrderByLastNameAscIdAsc("Da", PageRequest.of(0, 20)))
+            .willReturn(List.of(owner("Davis")));
+
+        mvc.perform(get("/owners?lastName=Da").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].lastName").value("Davis"));
+    }
+
+    private Owner owner(String lastName) {
+        Owner owner = new Owner();
+        owner.setFirstName("George");
+        owner.setLastName(lastName);
+        return owner;
+    }
+}
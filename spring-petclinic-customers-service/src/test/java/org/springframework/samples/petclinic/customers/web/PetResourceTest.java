@@ -1,5 +1,6 @@
 package org.springframework.samples.petclinic.customers.web;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
@@ -13,12 +14,14 @@ import org.springframework.samples.petclinic.customers.model.OwnerRepository;
 import org.springframework.samples.petclinic.customers.model.Pet;
 import org.springframework.samples.petclinic.customers.model.PetRepository;
 import org.springframework.samples.petclinic.customers.model.PetType;
+import org.springframework.samples.petclinic.customers.model.PetTypeRegistry;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 
 
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -41,6 +44,9 @@ class PetResourceTest {
     @MockBean
     OwnerRepository ownerRepository;
 
+    @MockBean
+    PetTypeRegistry petTypeRegistry;
+
     @Test
     void shouldGetAPetInJSonFormat() throws Exception {
 
@@ -57,6 +63,20 @@ class PetResourceTest {
             .andExpect(jsonPath("$.type.id").value(6));
     }
 
+    @Test
+    void shouldServePetTypesFromRegistry() throws Exception {
+        PetType petType = new PetType();
+        petType.setId(1);
+        petType.setName("cat");
+        given(petTypeRegistry.getPetTypes()).willReturn(List.of(petType));
+
+        mvc.perform(get("/petTypes").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].name").value("cat"));
+
+        verifyNoInteractions(petRepository);
+    }
+
     private Pet setupPet() {
         Owner owner = new Owner();
         owner.setFirstName("George");
@@ -20,13 +20,14 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.samples.petclinic.vets.system.VetsProperties;
+import org.springframework.samples.petclinic.vets.system.WarmUpProperties;
 
 /**
  * @author Maciej Szarlinski
  */
 @EnableDiscoveryClient
 @SpringBootApplication
-@EnableConfigurationProperties(VetsProperties.class)
+@EnableConfigurationProperties({VetsProperties.class, WarmUpProperties.class})
 public class VetsServiceApplication {
 
 	public static void main(String[] args) {
@@ -15,6 +15,7 @@
  */
 package org.springframework.samples.petclinic.vets.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -24,6 +25,7 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
 /**
  * Models a {@link Vet Vet's} specialty (for example, dentistry).
@@ -45,4 +47,10 @@ public class Specialty {
     @Column(name = "name")
     private String name;
 
+    @Version
+    @Column(name = "version")
+    @Getter
+    @JsonIgnore
+    private Integer version;
+
 }
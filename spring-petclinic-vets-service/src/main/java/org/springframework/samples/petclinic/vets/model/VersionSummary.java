@@ -0,0 +1,33 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vets.model;
+
+import java.util.Collection;
+
+/**
+ * Number of vet or specialty rows and sum of their versions, from which the vet list ETag is built.
+ */
+public record VersionSummary(Long rows, Long versions) {
+
+    public VersionSummary {
+        rows = rows == null ? 0L : rows;
+        versions = versions == null ? 0L : versions;
+    }
+
+    public static VersionSummary of(Collection<Integer> versions) {
+        return new VersionSummary((long) versions.size(), versions.stream().mapToLong(version -> version == null ? 0 : version).sum());
+    }
+}
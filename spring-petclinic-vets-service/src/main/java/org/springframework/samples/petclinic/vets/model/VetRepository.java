@@ -16,6 +16,7 @@
 package org.springframework.samples.petclinic.vets.model;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 /**
  * Repository class for <code>Vet</code> domain objects All method names are compliant with Spring Data naming
@@ -28,4 +29,14 @@ import org.springframework.data.jpa.repository.JpaRepository;
  * @author Maciej Szarlinski
  */
 public interface VetRepository extends JpaRepository<Vet, Integer> {
+
+    /**
+     * Tells whether the vets changed without loading them. Adding or removing a specialty of a vet
+     * increments the version of the vet.
+     */
+    @Query("SELECT new org.springframework.samples.petclinic.vets.model.VersionSummary(COUNT(v), SUM(v.version)) FROM Vet v")
+    VersionSummary summarizeVersions();
+
+    @Query("SELECT new org.springframework.samples.petclinic.vets.model.VersionSummary(COUNT(s), SUM(s.version)) FROM Specialty s")
+    VersionSummary summarizeSpecialtyVersions();
 }
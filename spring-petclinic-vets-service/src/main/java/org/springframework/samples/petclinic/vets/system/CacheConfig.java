@@ -15,16 +15,56 @@
  */
 package org.springframework.samples.petclinic.vets.system;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+import java.util.function.ToLongFunction;
 
 /**
- * Cache could be disable in unit test.
+ * Caffeine caches sized and expired from {@link VetsProperties.Cache}.
+ * <p>
+ * Entries are weighed in kilobytes against {@code heap-size} and dropped {@code ttl} seconds after they
+ * were written. Caches with a {@link CacheValueLoader} are also reloaded in the background once their
+ * entry is older than {@code refresh}: the read that notices it still gets the current value, so callers
+ * only wait for a load after a miss. Statistics are recorded for the {@code cache.*} metrics.
+ * <p>
+ * Web slice tests do not pick up this configuration and run without caching.
+ *
  * @author Maciej Szarlinski
  */
 @Configuration
 @EnableCaching
-@Profile("production")
+@Slf4j
 class CacheConfig {
+
+    @Bean
+    CaffeineCacheManager cacheManager(VetsProperties properties, ObjectProvider<CacheValueLoader> loaders) {
+        final VetsProperties.Cache cache = properties.getCache();
+        final CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(builder(cache, value -> 1024));
+        loaders.orderedStream().forEach(loader -> {
+            final CacheLoader<Object, Object> cacheLoader = loader::load;
+            cacheManager.registerCustomCache(loader.getCacheName(), builder(cache, loader::sizeOf)
+                .refreshAfterWrite(Duration.ofSeconds(cache.refreshSeconds()))
+                .build(cacheLoader));
+            log.info("Cache {}: ttl {}s, refreshed after {}s, {} KB", loader.getCacheName(), cache.getTtl(),
+                cache.refreshSeconds(), cache.getHeapSize());
+        });
+        return cacheManager;
+    }
+
+    private static Caffeine<Object, Object> builder(VetsProperties.Cache cache, ToLongFunction<Object> sizeOf) {
+        return Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(cache.getTtl()))
+            .maximumWeight(cache.getHeapSize())
+            .weigher((key, value) -> (int) Math.max(1, Math.min(sizeOf.applyAsLong(value) / 1024, Integer.MAX_VALUE)))
+            .recordStats();
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vets.system;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code /actuator/cacheentries}: size, statistics and entries of the caches of {@link CacheConfig}.
+ * <p>
+ * {@code DELETE /actuator/cacheentries/{name}} evicts a whole cache, or a single entry with a
+ * {@code key} parameter matching the {@code key} shown by the read operation. Reading entries does not
+ * count as a cache access.
+ */
+@Component
+@Endpoint(id = "cacheentries")
+@RequiredArgsConstructor
+class CacheEntriesEndpoint {
+
+    private final CaffeineCacheManager cacheManager;
+
+    @ReadOperation
+    public Map<String, CacheDescriptor> caches() {
+        final Map<String, CacheDescriptor> caches = new TreeMap<>();
+        for (String name : cacheManager.getCacheNames()) {
+            caches.put(name, describe(nativeCache(name)));
+        }
+        return caches;
+    }
+
+    @ReadOperation
+    public CacheDescriptor cache(@Selector String name) {
+        final Cache<Object, Object> cache = nativeCache(name);
+        return cache != null ? describe(cache) : null;
+    }
+
+    /**
+     * @return the number of evicted entries, {@code null} for an unknown cache
+     */
+    @DeleteOperation
+    public Long evict(@Selector String name, @Nullable String key) {
+        final Cache<Object, Object> cache = nativeCache(name);
+        if (cache == null) {
+            return null;
+        }
+        final List<Object> keys = cache.asMap().keySet().stream()
+            .filter(candidate -> key == null || key.equals(String.valueOf(candidate)))
+            .toList();
+        cache.invalidateAll(keys);
+        return (long) keys.size();
+    }
+
+    private Cache<Object, Object> nativeCache(String name) {
+        return cacheManager.getCacheNames().contains(name) && cacheManager.getCache(name) instanceof CaffeineCache cache
+            ? cache.getNativeCache() : null;
+    }
+
+    private static CacheDescriptor describe(Cache<Object, Object> cache) {
+        final CacheStats stats = cache.stats();
+        final Policy<Object, Object> policy = cache.policy();
+        final List<EntryDescriptor> entries = cache.asMap().entrySet().stream()
+            .map(entry -> new EntryDescriptor(
+                String.valueOf(entry.getKey()),
+                String.valueOf(entry.getValue()),
+                policy.expireAfterWrite().map(expiration -> expiration.ageOf(entry.getKey(), TimeUnit.SECONDS).orElse(-1)).orElse(-1L),
+                policy.eviction().map(eviction -> eviction.weightOf(entry.getKey()).orElse(1)).orElse(1)))
+            .toList();
+        return new CacheDescriptor(
+            cache.estimatedSize(),
+            policy.eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L),
+            policy.eviction().map(Policy.Eviction::getMaximum).orElse(-1L),
+            stats.hitCount(), stats.missCount(), stats.loadSuccessCount(), stats.loadFailureCount(), stats.evictionCount(),
+            entries);
+    }
+
+    /**
+     * @param weight     kilobytes counted against {@code vets.cache.heap-size}
+     * @param maxWeight  {@code vets.cache.heap-size}
+     */
+    record CacheDescriptor(long size, long weight, long maxWeight, long hits, long misses, long loads, long loadFailures,
+                           long evictions, List<EntryDescriptor> entries) {
+    }
+
+    /**
+     * @param ageSeconds seconds since the entry was loaded or refreshed
+     */
+    record EntryDescriptor(String key, String value, long ageSeconds, int weight) {
+    }
+}
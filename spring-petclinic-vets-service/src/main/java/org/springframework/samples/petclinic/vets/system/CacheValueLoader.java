@@ -0,0 +1,36 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vets.system;
+
+/**
+ * Computes the entries of one cache, so that {@link CacheConfig} can reload them in the background.
+ */
+public interface CacheValueLoader {
+
+    String getCacheName();
+
+    /**
+     * Called on a miss, and again once an entry is older than {@code vets.cache.refresh}.
+     */
+    Object load(Object key);
+
+    /**
+     * @return the number of bytes the value takes, counted against {@code vets.cache.heap-size}
+     */
+    default long sizeOf(Object value) {
+        return 1024;
+    }
+}
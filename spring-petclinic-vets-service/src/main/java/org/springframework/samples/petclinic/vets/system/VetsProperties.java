@@ -28,13 +28,29 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "vets")
 public class VetsProperties {
 
-    private Cache cache;
+    private Cache cache = new Cache();
 
     @Data
     public static class Cache {
 
-        private int ttl;
+        /**
+         * Seconds after which an entry is dropped.
+         */
+        private int ttl = 60;
 
-        private int heapSize;
+        /**
+         * Seconds after which an entry is reloaded in the background on its next read, while the
+         * current value is still served. 0 for three quarters of the ttl.
+         */
+        private int refresh;
+
+        /**
+         * Kilobytes of values held by each cache.
+         */
+        private int heapSize = 1024;
+
+        int refreshSeconds() {
+            return refresh > 0 ? Math.min(refresh, ttl) : Math.max(ttl * 3 / 4, 1);
+        }
     }
 }
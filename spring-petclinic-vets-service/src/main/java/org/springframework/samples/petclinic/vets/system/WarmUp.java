@@ -0,0 +1,114 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vets.system;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the cached vet list of this instance before it takes traffic, so that the first clients of a new
+ * instance neither wait for it nor all load it from the database at once.
+ * <p>
+ * Once the web server has started, {@code /vets} is requested from the instance itself, which also warms
+ * up the serialization path. The instance registers in Eureka with
+ * {@code eureka.instance.initial-status: STARTING} and is only marked {@code UP} here, as is this health
+ * indicator. When the request fails the vet list is built by the first client instead, and the instance
+ * is marked {@code UP} anyway unless {@code petclinic.warm-up.register-on-failure} is {@code false}.
+ * <p>
+ * The request is timed by {@code petclinic.warmup.request}.
+ */
+@Component
+@Slf4j
+class WarmUp implements ApplicationRunner, HealthIndicator {
+
+    private static final String VETS = "/vets";
+
+    private final WarmUpProperties properties;
+
+    private final ApplicationContext context;
+
+    private final RestTemplate restTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ObjectProvider<ApplicationInfoManager> eureka;
+
+    private volatile Status status;
+
+    WarmUp(WarmUpProperties properties, ApplicationContext context, RestTemplateBuilder restTemplateBuilder,
+           MeterRegistry meterRegistry, ObjectProvider<ApplicationInfoManager> eureka) {
+        this.properties = properties;
+        this.context = context;
+        this.restTemplate = restTemplateBuilder.setReadTimeout(properties.getTimeout()).build();
+        this.meterRegistry = meterRegistry;
+        this.eureka = eureka;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        final boolean warm = !properties.isEnabled() || !(context instanceof WebServerApplicationContext webContext)
+            || requestVets("http://localhost:" + webContext.getWebServer().getPort());
+        final boolean register = warm || properties.isRegisterOnFailure();
+        if (!warm) {
+            log.warn("Vet list warm-up failed, {}",
+                register ? "marking the instance UP without a cached vet list" : "keeping the instance OUT_OF_SERVICE");
+        }
+        status = register ? Status.UP : Status.OUT_OF_SERVICE;
+        eureka.ifAvailable(infoManager -> infoManager.setInstanceStatus(register ? InstanceStatus.UP : InstanceStatus.OUT_OF_SERVICE));
+    }
+
+    private boolean requestVets(String baseUrl) {
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome;
+        try {
+            final boolean success = restTemplate.getForEntity(baseUrl + VETS, byte[].class).getStatusCode().is2xxSuccessful();
+            outcome = success ? "SUCCESS" : "FAILURE";
+        } catch (RestClientException ex) {
+            outcome = "FAILURE";
+            log.warn("Warm-up request {} failed: {}", VETS, ex.getMessage());
+        }
+        final long nanos = sample.stop(Timer.builder("petclinic.warmup.request")
+            .description("Warm-up requests sent at startup")
+            .tag("uri", VETS)
+            .tag("outcome", outcome)
+            .register(meterRegistry));
+        log.info("Warm-up {} {} in {} ms", VETS, outcome, TimeUnit.NANOSECONDS.toMillis(nanos));
+        return "SUCCESS".equals(outcome);
+    }
+
+    @Override
+    public Health health() {
+        final Status current = status;
+        return Health.status(current != null ? current : Status.OUT_OF_SERVICE).build();
+    }
+}
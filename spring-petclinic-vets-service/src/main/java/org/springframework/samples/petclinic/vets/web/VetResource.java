@@ -17,14 +17,15 @@ package org.springframework.samples.petclinic.vets.web;
 
 import lombok.RequiredArgsConstructor;
 
-import java.util.List;
-
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.samples.petclinic.vets.model.Vet;
-import org.springframework.samples.petclinic.vets.model.VetRepository;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.vets.web.VetsPayloads.VetsPayload;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /**
  * @author Juergen Hoeller
@@ -38,11 +39,43 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 class VetResource {
 
-    private final VetRepository vetRepository;
+    private final VetsPayloads vetsPayloads;
+
+    /**
+     * Sends the pre-serialized vet list, gzipped when the client accepts it, or a {@code 304 Not Modified}
+     * when the ETag of the client is current.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> showResourcesVetList(WebRequest request) {
+        final VetsPayload payload = vetsPayloads.get();
+        if (request.checkNotModified(payload.etag())) {
+            return null;
+        }
+        final ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (payload.gzip() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.gzip());
+        }
+        return response.body(payload.json());
+    }
 
-    @GetMapping
-    @Cacheable("vets")
-    public List<Vet> showResourcesVetList() {
-        return vetRepository.findAll();
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String coding : StringUtils.commaDelimitedListToStringArray(acceptEncoding)) {
+            final String[] parts = coding.split(";");
+            final boolean accepted = parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            final String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip")) {
+                return accepted;
+            }
+            if (name.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return wildcard;
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vets.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.samples.petclinic.vets.model.VersionSummary;
+import org.springframework.samples.petclinic.vets.model.Vet;
+import org.springframework.samples.petclinic.vets.model.VetRepository;
+import org.springframework.samples.petclinic.vets.system.CacheValueLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds the vet list as the bytes sent to clients.
+ * <p>
+ * The list is serialized once, and gzipped as well when that makes it smaller, so that requests are
+ * served from memory. The payload lives in the {@code vets} cache; when it is rebuilt, the versions of
+ * the vets and specialties are compared with those the current payload was built from, and the vets
+ * are only loaded and serialized again when one of them changed. The cache reloads the payload in the
+ * background, so that check runs off the request path.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+class VetsPayloads implements CacheValueLoader {
+
+    static final String VETS_CACHE = "vets";
+
+    private final VetRepository vetRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private volatile VetsPayload current;
+
+    @Cacheable(VETS_CACHE)
+    public VetsPayload get() {
+        return refresh();
+    }
+
+    @Override
+    public String getCacheName() {
+        return VETS_CACHE;
+    }
+
+    @Override
+    public Object load(Object key) {
+        return refresh();
+    }
+
+    @Override
+    public long sizeOf(Object value) {
+        return value instanceof VetsPayload payload ? payload.size() : CacheValueLoader.super.sizeOf(value);
+    }
+
+    private VetsPayload refresh() {
+        final VersionSummary vets = vetRepository.summarizeVersions();
+        final VersionSummary specialties = vetRepository.summarizeSpecialtyVersions();
+        final VetsPayload payload = current;
+        if (payload != null && payload.vets().equals(vets) && payload.specialties().equals(specialties)) {
+            return payload;
+        }
+        // Versions are read first: a change made in between is picked up by the next refresh
+        current = build(vetRepository.findAll(), vets, specialties);
+        return current;
+    }
+
+    private VetsPayload build(List<Vet> vets, VersionSummary vetVersions, VersionSummary specialtyVersions) {
+        final byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(vets);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not serialize the vets", ex);
+        }
+        final byte[] gzip = gzip(json);
+        final String etag = ETags.of(vetVersions.rows(), vetVersions.versions(), specialtyVersions.rows(), specialtyVersions.versions());
+        log.info("Serialized {} vets: {} bytes, {} gzipped", vets.size(), json.length, gzip.length);
+        return new VetsPayload(etag, json, gzip.length < json.length ? gzip : null, vetVersions, specialtyVersions);
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param gzip the gzipped JSON, or {@code null} when gzip does not make it smaller
+     */
+    record VetsPayload(String etag, byte[] json, byte[] gzip, VersionSummary vets, VersionSummary specialties) {
+
+        long size() {
+            return json.length + (gzip != null ? gzip.length : 0);
+        }
+
+        @Override
+        public String toString() {
+            return "VetsPayload[etag=" + etag + ", json=" + json.length + " bytes, gzip="
+                + (gzip != null ? gzip.length + " bytes" : "none") + "]";
+        }
+    }
+}
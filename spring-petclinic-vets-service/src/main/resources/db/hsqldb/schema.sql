@@ -5,13 +5,15 @@ DROP TABLE specialties IF EXISTS;
 CREATE TABLE vets (
   id         INTEGER IDENTITY PRIMARY KEY,
   first_name VARCHAR(30),
-  last_name  VARCHAR(30)
+  last_name  VARCHAR(30),
+  version    INTEGER DEFAULT 0 NOT NULL
 );
 CREATE INDEX vets_last_name ON vets (last_name);
 
 CREATE TABLE specialties (
-  id   INTEGER IDENTITY PRIMARY KEY,
-  name VARCHAR(80)
+  id      INTEGER IDENTITY PRIMARY KEY,
+  name    VARCHAR(80),
+  version INTEGER DEFAULT 0 NOT NULL
 );
 CREATE INDEX specialties_name ON specialties (name);
 
@@ -0,0 +1,70 @@
+package org.springframework.samples.petclinic.vets.system;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheConfigTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+        .withUserConfiguration(CacheConfig.class)
+        .withBean(VetsProperties.class, () -> {
+            final VetsProperties properties = new VetsProperties();
+            properties.getCache().setTtl(60);
+            properties.getCache().setHeapSize(10);
+            return properties;
+        })
+        .withBean(CacheValueLoader.class, () -> new CacheValueLoader() {
+            @Override
+            public String getCacheName() {
+                return "vets";
+            }
+
+            @Override
+            public Object load(Object key) {
+                return "payload " + loads.incrementAndGet();
+            }
+        });
+
+    @Test
+    void cacheWithALoaderIsRefreshedAndBoundedByTheProperties() {
+        contextRunner.run(context -> {
+            final CaffeineCacheManager cacheManager = context.getBean(CaffeineCacheManager.class);
+            final org.springframework.cache.Cache vets = cacheManager.getCache("vets");
+
+            assertThat(vets.get(SimpleKey.EMPTY, String.class)).isEqualTo("payload 1");
+            assertThat(vets.get(SimpleKey.EMPTY, String.class)).isEqualTo("payload 1");
+            assertThat(loads).hasValue(1);
+
+            final Cache<Object, Object> cache = ((CaffeineCache) vets).getNativeCache();
+            assertThat(cache.policy().refreshAfterWrite()).hasValueSatisfying(refresh ->
+                assertThat(refresh.getRefreshesAfter(TimeUnit.SECONDS)).isEqualTo(45));
+            assertThat(cache.policy().expireAfterWrite()).hasValueSatisfying(expiration ->
+                assertThat(expiration.getExpiresAfter(TimeUnit.SECONDS)).isEqualTo(60));
+            assertThat(cache.policy().eviction()).hasValueSatisfying(eviction ->
+                assertThat(eviction.getMaximum()).isEqualTo(10));
+            assertThat(cache.stats().hitCount()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void refreshDefaultsToThreeQuartersOfTheTtl() {
+        final VetsProperties.Cache cache = new VetsProperties.Cache();
+        cache.setTtl(10);
+        assertThat(cache.refreshSeconds()).isEqualTo(7);
+        cache.setRefresh(3);
+        assertThat(cache.refreshSeconds()).isEqualTo(3);
+        cache.setTtl(1);
+        assertThat(cache.refreshSeconds()).isEqualTo(1);
+    }
+}
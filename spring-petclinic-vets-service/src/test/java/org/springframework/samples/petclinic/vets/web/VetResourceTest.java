@@ -20,16 +20,28 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.vets.model.VersionSummary;
 import org.springframework.samples.petclinic.vets.model.Vet;
 import org.springframework.samples.petclinic.vets.model.VetRepository;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -38,6 +50,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  */
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(VetResource.class)
+@Import(VetsPayloads.class)
 @ActiveProfiles("test")
 class VetResourceTest {
 
@@ -53,10 +66,72 @@ class VetResourceTest {
         Vet vet = new Vet();
         vet.setId(1);
 
+        givenVersions(1, 0);
         given(vetRepository.findAll()).willReturn(asList(vet));
 
         mvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isOk())
-            .andExpect(jsonPath("$[0].id").value(1));
+            .andExpect(jsonPath("$[0].id").value(1))
+            .andExpect(header().string(HttpHeaders.ETAG, "W/\"1.0.3.0\""));
+    }
+
+    @Test
+    void shouldAnswerUnchangedVetsWithNotModified() throws Exception {
+        givenVersions(2, 0);
+
+        mvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, "W/\"2.0.3.0\""))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+    }
+
+    @Test
+    void shouldSerializeVetsOnlyWhenTheyChange() throws Exception {
+        givenVersions(1, 5);
+        given(vetRepository.findAll()).willReturn(asList(new Vet()));
+
+        mvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk());
+        mvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk());
+        verify(vetRepository, times(1)).findAll();
+
+        givenVersions(1, 6);
+        mvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON))
+            .andExpect(header().string(HttpHeaders.ETAG, "W/\"1.6.3.0\""));
+        verify(vetRepository, times(2)).findAll();
+    }
+
+    @Test
+    void shouldSendGzippedVetsWhenAccepted() throws Exception {
+        final List<Vet> vets = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            final Vet vet = new Vet();
+            vet.setId(i);
+            vet.setFirstName("James");
+            vet.setLastName("Carter");
+            vets.add(vet);
+        }
+        givenVersions(20, 0);
+        given(vetRepository.findAll()).willReturn(vets);
+
+        mvc.perform(get("/vets").accept(MediaType.APPLICATION_JSON).header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+            .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    @Test
+    void shouldParseAcceptEncoding() {
+        assertTrue(VetResource.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(VetResource.acceptsGzip("*"));
+        assertFalse(VetResource.acceptsGzip("gzip;q=0, *"));
+        assertFalse(VetResource.acceptsGzip("br"));
+        assertFalse(VetResource.acceptsGzip(null));
+    }
+
+    /**
+     * Each test uses its own versions: the payload built by a previous test is kept by {@link VetsPayloads}.
+     */
+    private void givenVersions(long vets, long vetVersions) {
+        given(vetRepository.summarizeVersions()).willReturn(new VersionSummary(vets, vetVersions));
+        given(vetRepository.summarizeSpecialtyVersions()).willReturn(new VersionSummary(3L, 0L));
     }
 }
@@ -16,6 +16,7 @@
 package org.springframework.samples.petclinic.visits.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -27,8 +28,10 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.Size;
 import java.util.Date;
 
@@ -47,8 +50,14 @@ import java.util.Date;
 @AllArgsConstructor
 public class Visit {
 
+    /**
+     * Ids are handed out in blocks from the {@code id_generators} table rather than by an identity
+     * column, so that batches of visits can be inserted with JDBC batching.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "visit_ids")
+    @TableGenerator(name = "visit_ids", table = "id_generators", pkColumnName = "name",
+        valueColumnName = "next_val", pkColumnValue = "visits", allocationSize = 50)
     private Integer id;
 
     @Builder.Default
@@ -64,4 +73,9 @@ public class Visit {
     @Column(name = "pet_id")
     private int petId;
 
+    @Version
+    @Column(name = "version")
+    @JsonIgnore
+    private Integer version;
+
 }
@@ -16,9 +16,14 @@
 package org.springframework.samples.petclinic.visits.model;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /**
  * Repository class for <code>Visit</code> domain objects All method names are compliant with Spring Data naming conventions so this interface can easily be extended for Spring
@@ -35,4 +40,107 @@ public interface VisitRepository extends JpaRepository<Visit, Integer> {
     List<Visit> findByPetId(int petId);
 
     List<Visit> findByPetIdIn(Collection<Integer> petIds);
+
+    /**
+     * @param type {@link Visit} or a projection such as {@link VisitHeader}
+     */
+    <T> List<T> findByPetId(int petId, Class<T> type);
+
+    /**
+     * @param type {@link Visit} or a projection such as {@link VisitHeader}
+     */
+    <T> List<T> findByPetIdIn(Collection<Integer> petIds, Class<T> type);
+
+    /**
+     * Visits of a pet within a date range, in date then id order, following the visit with the given date
+     * and id. Served by the {@code (pet_id, visit_date)} index, which InnoDB completes with the id.
+     */
+    @Query("""
+        SELECT v FROM Visit v
+        WHERE v.petId = :petId
+          AND v.date BETWEEN :from AND :to
+          AND (v.date > :afterDate OR (v.date = :afterDate AND v.id > :afterId))
+        ORDER BY v.date, v.id
+        """)
+    List<Visit> findPageByPetId(@Param("petId") int petId, @Param("from") Date from, @Param("to") Date to,
+                                @Param("afterDate") Date afterDate, @Param("afterId") int afterId, Pageable pageable);
+
+    /**
+     * Same as {@link #findPageByPetId} without the descriptions.
+     */
+    @Query("""
+        SELECT new org.springframework.samples.petclinic.visits.model.VisitHeader(v.id, v.petId, v.date) FROM Visit v
+        WHERE v.petId = :petId
+          AND v.date BETWEEN :from AND :to
+          AND (v.date > :afterDate OR (v.date = :afterDate AND v.id > :afterId))
+        ORDER BY v.date, v.id
+        """)
+    List<VisitHeader> findHeaderPageByPetId(@Param("petId") int petId, @Param("from") Date from, @Param("to") Date to,
+                                            @Param("afterDate") Date afterDate, @Param("afterId") int afterId, Pageable pageable);
+
+    /**
+     * Visits of several pets within a date range, in date then id order, following the visit with the
+     * given date and id. The page size applies to the pets as a whole.
+     */
+    @Query("""
+        SELECT v FROM Visit v
+        WHERE v.petId IN :petIds
+          AND v.date BETWEEN :from AND :to
+          AND (v.date > :afterDate OR (v.date = :afterDate AND v.id > :afterId))
+        ORDER BY v.date, v.id
+        """)
+    List<Visit> findPageByPetIdIn(@Param("petIds") Collection<Integer> petIds, @Param("from") Date from, @Param("to") Date to,
+                                  @Param("afterDate") Date afterDate, @Param("afterId") int afterId, Pageable pageable);
+
+    /**
+     * Same as {@link #findPageByPetIdIn} without the descriptions.
+     */
+    @Query("""
+        SELECT new org.springframework.samples.petclinic.visits.model.VisitHeader(v.id, v.petId, v.date) FROM Visit v
+        WHERE v.petId IN :petIds
+          AND v.date BETWEEN :from AND :to
+          AND (v.date > :afterDate OR (v.date = :afterDate AND v.id > :afterId))
+        ORDER BY v.date, v.id
+        """)
+    List<VisitHeader> findHeaderPageByPetIdIn(@Param("petIds") Collection<Integer> petIds, @Param("from") Date from,
+                                              @Param("to") Date to, @Param("afterDate") Date afterDate,
+                                              @Param("afterId") int afterId, Pageable pageable);
+
+    /**
+     * The {@code limit} most recent visits of each pet, most recent first.
+     * <p>
+     * Each pet's visits are numbered in one pass over its range of the {@code (pet_id, visit_date)} index,
+     * so the cost grows with the number of visits rather than with its square.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT id, visit_date, description, pet_id, version FROM (
+            SELECT v.id, v.visit_date, v.description, v.pet_id, v.version,
+                   ROW_NUMBER() OVER (PARTITION BY v.pet_id ORDER BY v.visit_date DESC, v.id DESC) AS pet_rank
+            FROM visits v
+            WHERE v.pet_id IN (:petIds)
+        ) ranked
+        WHERE pet_rank <= :limit
+        ORDER BY pet_id, visit_date DESC, id DESC
+        """)
+    List<Visit> findLatestByPetIdIn(@Param("petIds") Collection<Integer> petIds, @Param("limit") long limit);
+
+    /**
+     * One summary per pet having visits, computed from the {@code (pet_id, visit_date)} index alone.
+     */
+    @Query("""
+        SELECT new org.springframework.samples.petclinic.visits.model.VisitSummary(v.petId, COUNT(v), MAX(v.date))
+        FROM Visit v
+        WHERE v.petId IN :petIds
+        GROUP BY v.petId
+        """)
+    List<VisitSummary> findSummariesByPetIdIn(@Param("petIds") Collection<Integer> petIds);
+
+    @Query("SELECT v.version FROM Visit v WHERE v.id = :visitId")
+    Optional<Integer> findVersionById(@Param("visitId") int visitId);
+
+    /**
+     * Tells whether the visits of a pet changed without loading them.
+     */
+    @Query("SELECT new org.springframework.samples.petclinic.visits.model.VersionSummary(COUNT(v), SUM(v.version)) FROM Visit v WHERE v.petId = :petId")
+    VersionSummary summarizeVersionsByPetId(@Param("petId") int petId);
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.web;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs a query taking an {@code IN} list of ids over any number of ids.
+ * <p>
+ * Ids are split into chunks of at most {@code chunk-size} ids, and each chunk is padded to the next power
+ * of two by repeating its last id. Every list length therefore maps to one of a handful of SQL statements,
+ * which stay in the prepared statement cache, and no statement exceeds the IN-list limits of the database.
+ * Chunks beyond the first are run concurrently on a small dedicated pool and the results are merged in
+ * chunk order.
+ * <p>
+ * Each worker needs a JDBC connection of its own while it runs a chunk. The visits service runs without
+ * open-session-in-view, so the request thread does not hold a connection while it waits for its workers,
+ * and workers and requests cannot starve each other of connections. The pool is bounded as well: at most
+ * {@code parallelism} workers, capped to half of {@code spring.datasource.hikari.maximum-pool-size} so that
+ * requests always find connections, and at most {@code queue-capacity} waiting chunks. When the queue is
+ * full the request thread runs the chunk itself.
+ */
+@Component
+@Slf4j
+class InListQueryExecutor {
+
+    private final int chunkSize;
+
+    private final ThreadPoolExecutor executor;
+
+    InListQueryExecutor(@Value("${petclinic.visits.in-list.chunk-size:128}") int chunkSize,
+                        @Value("${petclinic.visits.in-list.parallelism:4}") int parallelism,
+                        @Value("${petclinic.visits.in-list.queue-capacity:64}") int queueCapacity,
+                        @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximumPoolSize) {
+        this.chunkSize = Integer.highestOneBit(Math.max(chunkSize, 1));
+        final int threads = Math.max(1, Math.min(parallelism, maximumPoolSize / 2));
+        if (threads < parallelism) {
+            log.warn("In-list parallelism lowered from {} to {} to leave connections of the pool of {} to requests",
+                parallelism, threads, maximumPoolSize);
+        }
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)), new CustomizableThreadFactory("visits-in-list-"),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @param ids   the ids to query, duplicates are ignored
+     * @param query runs the query for one padded chunk of ids
+     * @return the results of every chunk, in chunk order
+     */
+    <T> List<T> query(Collection<Integer> ids, Function<List<Integer>, List<T>> query) {
+        final List<List<Integer>> chunks = chunks(ids);
+        if (chunks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (chunks.size() == 1) {
+            return query.apply(chunks.get(0));
+        }
+        final List<CompletableFuture<List<T>>> futures = new ArrayList<>(chunks.size() - 1);
+        for (List<Integer> chunk : chunks.subList(1, chunks.size())) {
+            futures.add(CompletableFuture.supplyAsync(() -> query.apply(chunk), executor));
+        }
+        final List<T> results = new ArrayList<>(query.apply(chunks.get(0)));
+        try {
+            futures.forEach(future -> results.addAll(future.join()));
+        } catch (CompletionException ex) {
+            futures.forEach(future -> future.cancel(false));
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+        return results;
+    }
+
+    List<List<Integer>> chunks(Collection<Integer> ids) {
+        final List<Integer> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        final List<List<Integer>> chunks = new ArrayList<>((distinct.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            chunks.add(pad(distinct.subList(from, Math.min(from + chunkSize, distinct.size()))));
+        }
+        return chunks;
+    }
+
+    private static List<Integer> pad(List<Integer> chunk) {
+        final int size = chunk.size() == 1 ? 1 : Integer.highestOneBit(chunk.size() - 1) << 1;
+        final List<Integer> padded = new ArrayList<>(size);
+        padded.addAll(chunk);
+        final Integer last = chunk.get(chunk.size() - 1);
+        while (padded.size() < size) {
+            padded.add(last);
+        }
+        return padded;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.web;
+
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.samples.petclinic.visits.model.Visit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts many visits at once, in a single transaction: either all of them are saved or none is.
+ * <p>
+ * Hibernate groups the inserts into JDBC batches. They are flushed {@code chunk-size} visits at a time
+ * and the persistence context is cleared after each chunk, so that it does not grow with the size of the
+ * request; the size of the transaction is bounded by {@code petclinic.visits.batch.max-size}.
+ */
+@Component
+@Slf4j
+class VisitBatchWriter {
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int chunkSize;
+
+    VisitBatchWriter(EntityManager entityManager,
+                     PlatformTransactionManager transactionManager,
+                     @Value("${petclinic.visits.batch.chunk-size:500}") int chunkSize) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return the generated ids, in the order of the given visits
+     * @throws jakarta.persistence.PersistenceException if a visit could not be inserted, in which case none is saved
+     */
+    List<Integer> saveAll(List<Visit> visits) {
+        final long startedAt = System.nanoTime();
+        final List<Integer> ids = new ArrayList<>(visits.size());
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int from = 0; from < visits.size(); from += chunkSize) {
+                final List<Visit> chunk = visits.subList(from, Math.min(from + chunkSize, visits.size()));
+                chunk.forEach(entityManager::persist);
+                entityManager.flush();
+                entityManager.clear();
+                chunk.forEach(visit -> ids.add(visit.getId()));
+            }
+        });
+        log.info("Saved {} visits for {} pets in {} ms", ids.size(),
+            visits.stream().mapToInt(Visit::getPetId).distinct().count(), (System.nanoTime() - startedAt) / 1_000_000);
+        return ids;
+    }
+}
@@ -15,17 +15,28 @@
  */
 package org.springframework.samples.petclinic.visits.web;
 
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import jakarta.validation.constraints.Min;
 
 import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
-import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.visits.model.VersionSummary;
 import org.springframework.samples.petclinic.visits.model.Visit;
+import org.springframework.samples.petclinic.visits.model.VisitHeader;
 import org.springframework.samples.petclinic.visits.model.VisitRepository;
+import org.springframework.samples.petclinic.visits.model.VisitSummary;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -33,6 +44,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
 /**
  * @author Juergen Hoeller
@@ -48,8 +61,25 @@ import org.springframework.web.bind.annotation.RestController;
 @Timed("petclinic.visit")
 class VisitResource {
 
+    static final int MAX_LIMIT = 500;
+
+    private static final LocalDate EARLIEST = LocalDate.of(1900, 1, 1);
+
+    private static final LocalDate LATEST = LocalDate.of(9999, 12, 31);
+
+    private static final Set<String> FIELDS = Set.of("id", "petId", "date", "description");
+
     private final VisitRepository visitRepository;
 
+    private final VisitBatchWriter visitBatchWriter;
+
+    private final InListQueryExecutor inListQueryExecutor;
+
+    private final Validator validator;
+
+    @Value("${petclinic.visits.batch.max-size:10000}")
+    private int maxBatchSize;
+
     @PostMapping("owners/*/pets/{petId}/visits")
     @ResponseStatus(HttpStatus.CREATED)
     public Visit create(
@@ -61,19 +91,188 @@ class VisitResource {
         return visitRepository.save(visit);
     }
 
+    /**
+     * Creates visits for any number of pets in one request. Nothing is saved unless every visit is valid.
+     *
+     * @return the generated ids, in the order of the request body
+     */
+    @PostMapping("visits")
+    @ResponseStatus(HttpStatus.CREATED)
+    public VisitIds createAll(@RequestBody List<Visit> visits) {
+        if (visits.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "At most " + maxBatchSize + " visits can be created at once, got " + visits.size());
+        }
+        final List<String> errors = new ArrayList<>();
+        for (int i = 0; i < visits.size(); i++) {
+            final Visit visit = visits.get(i);
+            visit.setId(null);
+            if (visit.getPetId() < 1) {
+                errors.add("[" + i + "].petId must be greater than or equal to 1");
+            }
+            for (ConstraintViolation<Visit> violation : validator.validate(visit)) {
+                errors.add("[" + i + "]." + violation.getPropertyPath() + " " + violation.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.join(", ", errors));
+        }
+        return new VisitIds(visitBatchWriter.saveAll(visits));
+    }
+
+    @GetMapping("visits/{visitId}")
+    public Visit readOne(@PathVariable("visitId") int visitId, WebRequest request) {
+        if (ETags.isConditional(request)
+            && visitRepository.findVersionById(visitId).map(ETags::of).filter(request::checkNotModified).isPresent()) {
+            return null;
+        }
+        final Visit visit = visitRepository.findById(visitId)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Visit " + visitId + " not found"));
+        return request.checkNotModified(ETags.of(visit.getVersion())) ? null : visit;
+    }
+
+    /**
+     * Visits of a pet. Without parameters the whole history is returned; otherwise visits between
+     * {@code from} and {@code to} (inclusive) are returned by date then id, {@code limit} at a time. The
+     * next page starts after the visit of {@code afterDate} and {@code afterId}, the date and id of the
+     * last visit of the previous page.
+     * <p>
+     * When {@code fields} does not list {@code description}, visits are read as {@link VisitHeader}s and
+     * descriptions are neither loaded nor serialized; they can be fetched one by one from {@code visits/{visitId}}.
+     * <p>
+     * The whole history with descriptions is sent with an ETag built from the visit versions. A request carrying
+     * {@code If-None-Match} is first answered from the versions alone, and gets a {@code 304 Not Modified}
+     * without loading the visits when none changed.
+     */
     @GetMapping("owners/*/pets/{petId}/visits")
-    public List<Visit> read(@PathVariable("petId") @Min(1) int petId) {
-        return visitRepository.findByPetId(petId);
+    public List<?> read(
+        @PathVariable("petId") @Min(1) int petId,
+        @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+        @RequestParam(value = "limit", required = false) Integer limit,
+        @RequestParam(value = "afterDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate afterDate,
+        @RequestParam(value = "afterId", defaultValue = "0") int afterId,
+        @RequestParam(value = "fields", required = false) Set<String> fields,
+        WebRequest request) {
+        final boolean headersOnly = isHeadersOnly(fields);
+        if (isUnbounded(from, to, limit, afterDate, afterId)) {
+            if (headersOnly) {
+                return visitRepository.findByPetId(petId, VisitHeader.class);
+            }
+            if (ETags.isConditional(request) && request.checkNotModified(etag(visitRepository.summarizeVersionsByPetId(petId)))) {
+                return null;
+            }
+            final List<Visit> visits = visitRepository.findByPetId(petId);
+            return request.checkNotModified(etag(VersionSummary.of(visits.stream().map(Visit::getVersion).toList()))) ? null : visits;
+        }
+        final Date start = toDate(from, EARLIEST);
+        final Date end = toDate(to, LATEST);
+        final Date after = afterDate != null ? Date.valueOf(afterDate) : start;
+        final PageRequest page = PageRequest.of(0, limit(limit));
+        return headersOnly
+            ? visitRepository.findHeaderPageByPetId(petId, start, end, after, afterId, page)
+            : visitRepository.findPageByPetId(petId, start, end, after, afterId, page);
     }
 
+    /**
+     * Visits of several pets, filtered as for a single pet. With {@code latest}, only the most recent
+     * visits of each pet are returned, most recent first, and the other filters are ignored;
+     * {@code fields} does not apply to them.
+     */
     @GetMapping("pets/visits")
-    public Visits read(@RequestParam("petId") List<Integer> petIds) {
-        final List<Visit> byPetIdIn = visitRepository.findByPetIdIn(petIds);
-        return new Visits(byPetIdIn);
+    public Visits read(
+        @RequestParam("petId") List<Integer> petIds,
+        @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+        @RequestParam(value = "limit", required = false) Integer limit,
+        @RequestParam(value = "afterDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate afterDate,
+        @RequestParam(value = "afterId", defaultValue = "0") int afterId,
+        @RequestParam(value = "latest", required = false) Integer latest,
+        @RequestParam(value = "fields", required = false) Set<String> fields) {
+        if (latest != null) {
+            final long perPet = limit(latest);
+            return new Visits(inListQueryExecutor.query(petIds, chunk -> visitRepository.findLatestByPetIdIn(chunk, perPet)));
+        }
+        if (isUnbounded(from, to, limit, afterDate, afterId)) {
+            return query(petIds, fields);
+        }
+        final Date start = toDate(from, EARLIEST);
+        final Date end = toDate(to, LATEST);
+        final Date after = afterDate != null ? Date.valueOf(afterDate) : start;
+        final PageRequest page = PageRequest.of(0, limit(limit));
+        return new Visits(isHeadersOnly(fields)
+            ? visitRepository.findHeaderPageByPetIdIn(petIds, start, end, after, afterId, page)
+            : visitRepository.findPageByPetIdIn(petIds, start, end, after, afterId, page));
+    }
+
+    /**
+     * Same as {@code GET pets/visits?petId=...} for id sets too large to fit in a URL.
+     */
+    @PostMapping("pets/visits/query")
+    public Visits query(
+        @RequestBody List<Integer> petIds,
+        @RequestParam(value = "fields", required = false) Set<String> fields) {
+        if (isHeadersOnly(fields)) {
+            return new Visits(inListQueryExecutor.query(petIds, chunk -> visitRepository.findByPetIdIn(chunk, VisitHeader.class)));
+        }
+        return new Visits(inListQueryExecutor.query(petIds, visitRepository::findByPetIdIn));
     }
 
-    @Value
+    /**
+     * Number of visits and last visit date of each pet, without loading the visits themselves.
+     * Pets without visits are left out.
+     */
+    @GetMapping("pets/visits/summary")
+    public VisitSummaries readSummaries(@RequestParam("petId") List<Integer> petIds) {
+        return new VisitSummaries(inListQueryExecutor.query(petIds, visitRepository::findSummariesByPetIdIn));
+    }
+
+    /**
+     * @return whether the requested fields can be served by {@link VisitHeader}s
+     */
+    private static boolean isHeadersOnly(Set<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return false;
+        }
+        for (String field : fields) {
+            if (!FIELDS.contains(field)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown field " + field + ", expected one of " + FIELDS);
+            }
+        }
+        return !fields.contains("description");
+    }
+
+    private static boolean isUnbounded(LocalDate from, LocalDate to, Integer limit, LocalDate afterDate, int afterId) {
+        if (afterDate == null && afterId != 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "afterId goes with the afterDate of the same visit");
+        }
+        return from == null && to == null && limit == null && afterDate == null;
+    }
+
+    private static String etag(VersionSummary visits) {
+        return ETags.of(visits.rows(), visits.versions());
+    }
+
+    private static Date toDate(LocalDate date, LocalDate defaultDate) {
+        return Date.valueOf(date != null ? date : defaultDate);
+    }
+
+    private static int limit(Integer limit) {
+        return limit == null ? MAX_LIMIT : Math.min(Math.max(limit, 1), MAX_LIMIT);
+    }
+
+    @lombok.Value
     static class Visits {
-        List<Visit> items;
+        List<?> items;
+    }
+
+    @lombok.Value
+    static class VisitSummaries {
+        List<VisitSummary> items;
+    }
+
+    @lombok.Value
+    static class VisitIds {
+        List<Integer> ids;
     }
 }
@@ -1,4 +1,7 @@
-INSERT INTO visits VALUES (1, 7, '2013-01-01', 'rabies shot');
-INSERT INTO visits VALUES (2, 8, '2013-01-02', 'rabies shot');
-INSERT INTO visits VALUES (3, 8, '2013-01-03', 'neutered');
-INSERT INTO visits VALUES (4, 7, '2013-01-04', 'spayed');
+INSERT INTO visits VALUES (1, 7, '2013-01-01', 'rabies shot', 0);
+INSERT INTO visits VALUES (2, 8, '2013-01-02', 'rabies shot', 0);
+INSERT INTO visits VALUES (3, 8, '2013-01-03', 'neutered', 0);
+INSERT INTO visits VALUES (4, 7, '2013-01-04', 'spayed', 0);
+
+-- Visit ids are allocated in blocks of 50, starting above the rows already present
+INSERT INTO id_generators SELECT 'visits', COALESCE(MAX(id), 0) + 50 FROM visits;
@@ -1,10 +1,17 @@
+DROP TABLE id_generators IF EXISTS;
 DROP TABLE visits IF EXISTS;
 
 CREATE TABLE visits (
   id          INTEGER IDENTITY PRIMARY KEY,
   pet_id      INTEGER NOT NULL,
   visit_date  DATE,
-  description VARCHAR(8192)
+  description VARCHAR(8192),
+  version     INTEGER DEFAULT 0 NOT NULL
 );
 
-CREATE INDEX visits_pet_id ON visits (pet_id);
+CREATE INDEX visits_pet_id_visit_date ON visits (pet_id, visit_date);
+
+CREATE TABLE id_generators (
+  name     VARCHAR(30) PRIMARY KEY,
+  next_val INTEGER NOT NULL
+);
@@ -8,5 +8,12 @@ CREATE TABLE IF NOT EXISTS visits (
   pet_id INT(4) UNSIGNED NOT NULL,
   visit_date DATE,
   description VARCHAR(8192),
+  version INT(4) UNSIGNED NOT NULL DEFAULT 0,
+  INDEX visits_pet_id_visit_date (pet_id, visit_date),
   FOREIGN KEY (pet_id) REFERENCES pets(id)
 ) engine=InnoDB;
+
+CREATE TABLE IF NOT EXISTS id_generators (
+  name VARCHAR(30) NOT NULL PRIMARY KEY,
+  next_val INT(4) UNSIGNED NOT NULL
+) engine=InnoDB;
@@ -0,0 +1,50 @@
+package org.springframework.samples.petclinic.visits.model;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the hand-written queries against the sample visits: pet 7 on 2013-01-01 (1) and 2013-01-04 (4),
+ * pet 8 on 2013-01-02 (2) and 2013-01-03 (3).
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+class VisitRepositoryTest {
+
+    private static final Date EARLIEST = Date.valueOf("1900-01-01");
+
+    private static final Date LATEST = Date.valueOf("9999-12-31");
+
+    @Autowired
+    VisitRepository visitRepository;
+
+    @Test
+    void latestVisitsAreTheMostRecentOfEachPet() {
+        assertThat(visitRepository.findLatestByPetIdIn(List.of(7, 8), 1)).extracting(Visit::getId).containsExactly(4, 3);
+        assertThat(visitRepository.findLatestByPetIdIn(List.of(7, 8), 5)).extracting(Visit::getId).containsExactly(4, 1, 3, 2);
+    }
+
+    @Test
+    void pageFollowsTheGivenVisitInDateOrder() {
+        final List<Visit> page = visitRepository.findPageByPetIdIn(List.of(7, 8), EARLIEST, LATEST,
+            Date.valueOf("2013-01-02"), 2, PageRequest.of(0, 2));
+
+        assertThat(page).extracting(Visit::getId).containsExactly(3, 4);
+    }
+
+    @Test
+    void pageStaysWithinTheDateRange() {
+        final List<VisitHeader> page = visitRepository.findHeaderPageByPetId(7, Date.valueOf("2013-01-01"),
+            Date.valueOf("2013-01-03"), Date.valueOf("2013-01-01"), 0, PageRequest.of(0, 10));
+
+        assertThat(page).extracting(VisitHeader::id).containsExactly(1);
+    }
+}
@@ -0,0 +1,39 @@
+package org.springframework.samples.petclinic.visits.web;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InListQueryExecutorTest {
+
+    private final InListQueryExecutor executor = new InListQueryExecutor(4, 2, 8, 10);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void shouldPadChunksToPowersOfTwo() {
+        assertThat(executor.chunks(List.of(1, 2, 3, 4, 5, 6, 7, 2)))
+            .containsExactly(List.of(1, 2, 3, 4), List.of(5, 6, 7, 7));
+        assertThat(executor.chunks(List.of(1, 2, 3)))
+            .containsExactly(List.of(1, 2, 3, 3));
+        assertThat(executor.chunks(List.of(9)))
+            .containsExactly(List.of(9));
+    }
+
+    @Test
+    void shouldMergeChunkResultsInOrder() {
+        final List<Integer> ids = IntStream.rangeClosed(1, 10).boxed().collect(Collectors.toList());
+
+        final List<Integer> results = executor.query(ids, chunk -> chunk.stream().distinct().collect(Collectors.toList()));
+
+        assertThat(results).isEqualTo(ids);
+    }
+}
@@ -0,0 +1,56 @@
+package org.springframework.samples.petclinic.visits.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Many requests fanning out over a connection pool smaller than the number of requests must neither
+ * deadlock nor time out waiting for connections.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.datasource.hikari.maximum-pool-size=4",
+    "spring.datasource.hikari.connection-timeout=2000",
+    "petclinic.visits.in-list.chunk-size=2",
+    "petclinic.visits.in-list.parallelism=4",
+    "petclinic.visits.in-list.queue-capacity=4"
+})
+@ActiveProfiles("test")
+class InListQueryPoolTest {
+
+    private static final int CALLERS = 16;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    void concurrentRequestsShareASmallConnectionPool() throws Exception {
+        final ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try {
+            final List<Future<ResponseEntity<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < CALLERS * 4; i++) {
+                responses.add(callers.submit(() -> restTemplate.getForEntity("/pets/visits?petId=1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16", String.class)));
+            }
+            for (Future<ResponseEntity<String>> response : responses) {
+                final ResponseEntity<String> entity = response.get(30, TimeUnit.SECONDS);
+                assertThat(entity.getStatusCode()).isEqualTo(HttpStatus.OK);
+                assertThat(entity.getBody()).contains("\"petId\":7", "\"petId\":8");
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+}
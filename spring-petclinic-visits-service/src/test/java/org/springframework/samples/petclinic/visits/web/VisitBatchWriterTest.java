@@ -0,0 +1,62 @@
+package org.springframework.samples.petclinic.visits.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.visits.model.Visit;
+import org.springframework.samples.petclinic.visits.model.VisitRepository;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.samples.petclinic.visits.model.Visit.visit;
+
+/**
+ * Runs outside of a test transaction, so that the writer commits, or not, on its own.
+ */
+@DataJpaTest(properties = "petclinic.visits.batch.chunk-size=2")
+@Import(VisitBatchWriter.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ActiveProfiles("test")
+class VisitBatchWriterTest {
+
+    @Autowired
+    VisitBatchWriter visitBatchWriter;
+
+    @Autowired
+    VisitRepository visitRepository;
+
+    @Test
+    void visitsAreSavedInTheGivenOrder() {
+        final List<Integer> ids = visitBatchWriter.saveAll(visits(5));
+
+        assertThat(ids).hasSize(5).doesNotContainNull().isSorted();
+        assertThat(visitRepository.findAllById(ids)).extracting(Visit::getDescription)
+            .containsExactlyInAnyOrder("visit 0", "visit 1", "visit 2", "visit 3", "visit 4");
+    }
+
+    @Test
+    void noVisitIsSavedWhenOneFailsAfterEarlierChunks() {
+        final long before = visitRepository.count();
+        final List<Visit> visits = visits(5);
+        visits.get(4).setDescription("x".repeat(8193));
+
+        assertThrows(RuntimeException.class, () -> visitBatchWriter.saveAll(visits));
+
+        assertThat(visitRepository.count()).isEqualTo(before);
+    }
+
+    private static List<Visit> visits(int count) {
+        final List<Visit> visits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            visits.add(visit().petId(7).description("visit " + i).build());
+        }
+        return visits;
+    }
+}
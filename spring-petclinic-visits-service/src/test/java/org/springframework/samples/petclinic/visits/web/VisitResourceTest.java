@@ -5,21 +5,39 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.visits.model.VersionSummary;
+import org.springframework.samples.petclinic.visits.model.Visit;
+import org.springframework.samples.petclinic.visits.model.VisitHeader;
 import org.springframework.samples.petclinic.visits.model.VisitRepository;
+import org.springframework.samples.petclinic.visits.model.VisitSummary;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.sql.Date;
+import java.time.Instant;
 
 import static java.util.Arrays.asList;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
 import static org.springframework.samples.petclinic.visits.model.Visit.visit;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(VisitResource.class)
+@Import(InListQueryExecutor.class)
 @ActiveProfiles("test")
 class VisitResourceTest {
 
@@ -29,6 +47,9 @@ class VisitResourceTest {
     @MockBean
     VisitRepository visitRepository;
 
+    @MockBean
+    VisitBatchWriter visitBatchWriter;
+
     @Test
     void shouldFetchVisits() throws Exception {
         given(visitRepository.findByPetIdIn(asList(111, 222)))
@@ -58,4 +79,121 @@ class VisitResourceTest {
             .andExpect(jsonPath("$.items[1].petId").value(222))
             .andExpect(jsonPath("$.items[2].petId").value(222));
     }
+
+    @Test
+    void shouldCreateVisitsInBatch() throws Exception {
+        given(visitBatchWriter.saveAll(anyList())).willReturn(asList(51, 52));
+
+        mvc.perform(post("/visits")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"petId\": 7, \"date\": \"2023-05-01\", \"description\": \"rabies shot\"},"
+                    + " {\"petId\": 8, \"date\": \"2023-05-01\", \"description\": \"rabies shot\"}]"))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.ids[0]").value(51))
+            .andExpect(jsonPath("$.ids[1]").value(52));
+    }
+
+    @Test
+    void shouldRejectWholeBatchWhenOneVisitIsInvalid() throws Exception {
+        mvc.perform(post("/visits")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"petId\": 7, \"description\": \"rabies shot\"}, {\"description\": \"no pet\"}]"))
+            .andExpect(status().isBadRequest());
+
+        then(visitBatchWriter).should(never()).saveAll(anyList());
+    }
+
+    @Test
+    void shouldFetchVisitsWithinDateRange() throws Exception {
+        given(visitRepository.findPageByPetId(
+            7, Date.valueOf("2013-01-01"), Date.valueOf("2013-12-31"), Date.valueOf("2013-01-02"), 2, PageRequest.of(0, 10)))
+            .willReturn(asList(visit().id(4).petId(7).build()));
+
+        mvc.perform(get("/owners/6/pets/7/visits?from=2013-01-01&to=2013-12-31&afterDate=2013-01-02&afterId=2&limit=10"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id").value(4));
+    }
+
+    @Test
+    void shouldRejectAfterIdWithoutAfterDate() throws Exception {
+        mvc.perform(get("/owners/6/pets/7/visits?afterId=2&limit=10"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldFetchLatestVisitsPerPet() throws Exception {
+        given(visitRepository.findLatestByPetIdIn(eq(asList(7, 8)), eq(1L)))
+            .willReturn(asList(visit().id(4).petId(7).build(), visit().id(3).petId(8).build()));
+
+        mvc.perform(get("/pets/visits?petId=7,8&latest=1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items.length()").value(2))
+            .andExpect(jsonPath("$.items[0].id").value(4))
+            .andExpect(jsonPath("$.items[1].id").value(3));
+    }
+
+    @Test
+    void shouldFetchVisitsForIdsPostedInBody() throws Exception {
+        given(visitRepository.findByPetIdIn(asList(111, 222, 333, 333)))
+            .willReturn(asList(visit().id(1).petId(111).build(), visit().id(2).petId(333).build()));
+
+        mvc.perform(post("/pets/visits/query")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[111, 222, 333]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items.length()").value(2))
+            .andExpect(jsonPath("$.items[1].petId").value(333));
+    }
+
+    @Test
+    void shouldFetchVisitSummaries() throws Exception {
+        given(visitRepository.findSummariesByPetIdIn(asList(7, 8)))
+            .willReturn(asList(new VisitSummary(8, 2L, new Date(Instant.parse("2013-01-03T00:00:00Z").toEpochMilli()))));
+
+        mvc.perform(get("/pets/visits/summary?petId=7,8"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items.length()").value(1))
+            .andExpect(jsonPath("$.items[0].petId").value(8))
+            .andExpect(jsonPath("$.items[0].count").value(2))
+            .andExpect(jsonPath("$.items[0].lastVisitDate").value("2013-01-03"));
+    }
+
+    @Test
+    void shouldFetchVisitsWithoutDescriptions() throws Exception {
+        given(visitRepository.findByPetIdIn(asList(7, 8), VisitHeader.class))
+            .willReturn(asList(new VisitHeader(4, 7, new Date(Instant.parse("2013-01-04T00:00:00Z").toEpochMilli()))));
+
+        mvc.perform(get("/pets/visits?petId=7,8&fields=id,date"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items[0].id").value(4))
+            .andExpect(jsonPath("$.items[0].date").value("2013-01-04"))
+            .andExpect(jsonPath("$.items[0].description").doesNotExist());
+    }
+
+    @Test
+    void shouldRejectUnknownFields() throws Exception {
+        mvc.perform(get("/owners/6/pets/7/visits?fields=id,vet"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldSendPetVisitsWithETag() throws Exception {
+        given(visitRepository.findByPetId(7))
+            .willReturn(asList(visit().id(1).petId(7).version(2).build(), visit().id(2).petId(7).version(0).build()));
+
+        mvc.perform(get("/owners/6/pets/7/visits"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "W/\"2.2\""))
+            .andExpect(jsonPath("$[0].version").doesNotExist());
+    }
+
+    @Test
+    void shouldNotLoadUnchangedPetVisits() throws Exception {
+        given(visitRepository.summarizeVersionsByPetId(7)).willReturn(new VersionSummary(2L, 2L));
+
+        mvc.perform(get("/owners/6/pets/7/visits").header(HttpHeaders.IF_NONE_MATCH, "W/\"2.2\""))
+            .andExpect(status().isNotModified());
+
+        then(visitRepository).should(never()).findByPetId(anyInt());
+    }
 }